@@ -0,0 +1,150 @@
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Arrays;
+
+/**
+ * Runs an operation over and over for a fixed time and measures it: throughput, the spread of
+ * the time each call takes, and how much memory it allocates.
+ *
+ * The operation is first run for a warm-up period, so the JIT compiler has finished with it
+ * before anything is measured. Throughput is measured over batches of calls, and the batch size
+ * is doubled during the warm-up until a batch takes at least 10 microseconds, so that reading the
+ * clock does not swamp fast operations such as areAdjacent. The latency percentiles are of single
+ * calls, one timed on its own after each batch, as JMH's SampleTime mode does; averaging over a
+ * batch would hide the slow calls the higher percentiles are for. For slow operations a batch is a
+ * single call, so every other call is sampled. A sampled call includes one reading of the clock,
+ * so the percentiles of calls taking only tens of nanoseconds are mostly the clock's own cost.
+ *
+ * Allocation is read from the JVM's count of bytes allocated by the measuring thread, so memory
+ * allocated by other threads (e.g. a ForkJoinPool) is not included. If the JVM does not keep
+ * that count, the allocation figures are NaN.
+ */
+public class BenchmarkHarness {
+    private static final long MIN_BATCH_NANOS = 10_000;
+
+    private final long warmupNanos;
+    private final long measureNanos;
+    private volatile int sink; // results are written here so the JIT cannot drop the calls
+
+    /**
+     * An operation to be measured.
+     */
+    public interface Operation {
+        /**
+         * Run the operation once.
+         *
+         * @param i how many times it has been run before, for choosing inputs
+         * @return any value computed from the result, so that the work cannot be optimised away
+         */
+        int run(int i);
+    }
+
+    /**
+     * The measurements of one operation.
+     */
+    public static class Result {
+        public final long calls; // batched and sampled
+        public final long samples;
+        public final double callsPerSecond;
+        public final double p50, p90, p99, p999; // nanoseconds per call
+        public final double bytesPerCall;
+        public final double megabytesPerSecond;
+
+        Result(long batchedCalls, long batchNanos, long[] latencies, long calls, double bytes) {
+            this.calls = calls;
+            samples = latencies.length;
+            callsPerSecond = batchedCalls * 1e9 / batchNanos;
+            p50 = percentile(latencies, 0.5);
+            p90 = percentile(latencies, 0.9);
+            p99 = percentile(latencies, 0.99);
+            p999 = percentile(latencies, 0.999);
+            bytesPerCall = bytes / calls;
+            megabytesPerSecond = bytesPerCall * callsPerSecond / (1 << 20);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) (p * sorted.length))];
+        }
+    }
+
+    /**
+     * Construct a harness.
+     *
+     * @param warmupSeconds  how long to run each operation before measuring it
+     * @param measureSeconds how long to measure each operation for
+     */
+    public BenchmarkHarness(double warmupSeconds, double measureSeconds) {
+        if (warmupSeconds < 0 || !(measureSeconds > 0)) {
+            throw new IllegalArgumentException("Cannot warm up for " + warmupSeconds + "s and measure for " + measureSeconds + "s");
+        }
+        warmupNanos = (long) (warmupSeconds * 1e9);
+        measureNanos = (long) (measureSeconds * 1e9);
+    }
+
+    /**
+     * Warm up and measure an operation.
+     *
+     * @param operation the operation
+     * @return the measurements
+     */
+    public Result run(Operation operation) {
+        int i = 0;
+        int result = 0;
+        int batch = 1;
+        long end = System.nanoTime() + warmupNanos;
+        while (System.nanoTime() < end) {
+            long start = System.nanoTime();
+            for (int b = 0; b < batch; b++) {
+                result += operation.run(i++);
+            }
+            if (System.nanoTime() - start < MIN_BATCH_NANOS && batch < 1 << 20) {
+                batch *= 2;
+            }
+        }
+
+        long[] latencies = new long[1024];
+        int samples = 0;
+        long batchedCalls = 0;
+        long batchNanos = 0;
+        long allocated = allocatedBytes();
+        end = System.nanoTime() + measureNanos;
+        long now = System.nanoTime();
+        while (now < end) {
+            long start = now;
+            for (int b = 0; b < batch; b++) {
+                result += operation.run(i++);
+            }
+            now = System.nanoTime();
+            batchedCalls += batch;
+            batchNanos += now - start;
+
+            //The sampled call is left out of the throughput, which the extra clock reading would skew.
+            result += operation.run(i++);
+            long sampled = System.nanoTime();
+            if (samples == latencies.length) {
+                latencies = Arrays.copyOf(latencies, samples * 2);
+            }
+            latencies[samples++] = sampled - now;
+            now = sampled;
+        }
+        //The harness's own sample array is allocated too, but is negligible next to most operations.
+        double bytes = allocated < 0 ? Double.NaN : allocatedBytes() - allocated;
+        sink = result;
+
+        latencies = Arrays.copyOf(latencies, samples);
+        Arrays.sort(latencies);
+        return new Result(batchedCalls, batchNanos, latencies, batchedCalls + samples, bytes);
+    }
+
+    //Bytes allocated so far by this thread, or -1 if the JVM does not count them.
+    private static long allocatedBytes() {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean counting = (com.sun.management.ThreadMXBean) threads;
+            if (counting.isThreadAllocatedMemorySupported() && counting.isThreadAllocatedMemoryEnabled()) {
+                return counting.getThreadAllocatedBytes(Thread.currentThread().getId());
+            }
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,155 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Benchmarks of the main Graph operations on synthetic graphs of each shape in GraphShapes, from
+ * a thousand to ten million edges, so that changes which slow them down show up. For every shape,
+ * size and operation it prints the throughput, the 50th to 99.9th percentile time per call and
+ * how many calls they were taken from, and the memory allocated per call and per second; see
+ * BenchmarkHarness for how these are measured.
+ *
+ * Compile it together with src and run it from the module directory, e.g.
+ *
+ * <pre>
+ * javac -d bench-out src/*.java bench/*.java
+ * java -Xmx8g -cp bench-out GraphBenchmarks edges=1000,100000 ops=bfTraverse,mostDirectRoute
+ * </pre>
+ *
+ * Everything can be narrowed down with arguments of the form name=value,value:
+ *
+ * <pre>
+ * shapes   the shapes of graph to build, all of GraphShapes.SHAPES by default
+ * edges    roughly how many edges each graph should have, 1000 to 1000000 by default
+ * ops      the operations to measure, all of OPERATIONS by default
+ * warmup   seconds to run each operation before measuring it, 1 by default
+ * time     seconds to measure each operation for, 3 by default
+ * seed     seed for the graphs and the stations queried, 1 by default
+ * </pre>
+ *
+ * A graph with ten million edges needs several GB of heap. Each graph is built once and every
+ * operation is measured on it in turn; insertRemoveEdge and allConnectedAfterRemove change the
+ * graph while they run but leave it the same shape.
+ */
+public class GraphBenchmarks {
+    /**
+     * The operations that can be measured.
+     */
+    public static final String[] OPERATIONS = {"insertRemoveEdge", "incidentEdges", "areAdjacent", "bfTraverse",
+            "allReachable", "allConnected", "allConnectedAfterRemove", "mostDirectRoute"};
+
+    private static final int PICKS = 1 << 16; // stations queried, chosen up front and used in turn
+
+    private final Graph graph;
+    private final Vertex[] stations;
+    private final Vertex[] neighbours;
+    private final Edge[] segments;
+    private final int[] picks = new int[PICKS];
+
+    private GraphBenchmarks(Graph graph, long seed) {
+        this.graph = graph;
+        stations = graph.vertices().toArray(new Vertex[0]);
+        segments = graph.edges().toArray(new Edge[0]);
+        Random random = new Random(seed);
+        //Half the areAdjacent queries are between neighbours, or they would almost all be false.
+        neighbours = new Vertex[PICKS];
+        for (int p = 0; p < PICKS; p++) {
+            picks[p] = random.nextInt(stations.length);
+            ArrayList<Edge> incident = stations[picks[p]].getIncidentEdges();
+            neighbours[p] = incident.isEmpty() ? stations[picks[p]]
+                    : graph.opposite(incident.get(random.nextInt(incident.size())), stations[picks[p]]);
+        }
+    }
+
+    /**
+     * Run the benchmarks.
+     *
+     * @param args arguments of the form name=value,value as described above
+     */
+    public static void main(String[] args) {
+        LinkedHashMap<String, String> options = new LinkedHashMap<>();
+        options.put("shapes", String.join(",", GraphShapes.SHAPES));
+        options.put("edges", "1000,10000,100000,1000000");
+        options.put("ops", String.join(",", OPERATIONS));
+        options.put("warmup", "1");
+        options.put("time", "3");
+        options.put("seed", "1");
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (equals < 0 || !options.containsKey(arg.substring(0, equals))) {
+                throw new IllegalArgumentException("Unknown argument " + arg + ", expected one of " + options.keySet());
+            }
+            options.put(arg.substring(0, equals), arg.substring(equals + 1));
+        }
+        List<String> ops = Arrays.asList(options.get("ops").split(","));
+        for (String op : ops) {
+            if (!Arrays.asList(OPERATIONS).contains(op)) {
+                throw new IllegalArgumentException("Unknown operation " + op + ", expected one of " + Arrays.toString(OPERATIONS));
+            }
+        }
+        long seed = Long.parseLong(options.get("seed"));
+        BenchmarkHarness harness = new BenchmarkHarness(Double.parseDouble(options.get("warmup")), Double.parseDouble(options.get("time")));
+
+        System.out.printf("%-10s %9s %-23s %13s %11s %11s %11s %11s %9s %11s %9s%n", "shape", "edges", "operation",
+                "calls/s", "p50 ns", "p90 ns", "p99 ns", "p99.9 ns", "samples", "bytes/call", "MB/s");
+        for (String shape : options.get("shapes").split(",")) {
+            for (String size : options.get("edges").split(",")) {
+                Graph graph = GraphShapes.build(shape, Integer.parseInt(size), seed);
+                GraphBenchmarks benchmarks = new GraphBenchmarks(graph, seed);
+                for (String op : ops) {
+                    BenchmarkHarness.Result result = harness.run(benchmarks.operation(op));
+                    System.out.printf("%-10s %9d %-23s %13.1f %11.0f %11.0f %11.0f %11.0f %9d %11.1f %9.1f%n", shape,
+                            benchmarks.segments.length, op, result.callsPerSecond, result.p50, result.p90, result.p99,
+                            result.p999, result.samples, result.bytesPerCall, result.megabytesPerSecond);
+                }
+            }
+        }
+    }
+
+    //The named operation, querying the stations picked in turn.
+    private BenchmarkHarness.Operation operation(String name) {
+        switch (name) {
+            case "insertRemoveEdge":
+                return i -> {
+                    Edge edge = graph.insertEdge(station(i), station(i + 1), "Benchmark");
+                    graph.removeEdge(edge);
+                    return 1;
+                };
+            case "incidentEdges":
+                return i -> graph.incidentEdges(station(i)).size();
+            case "areAdjacent":
+                return i -> graph.areAdjacent(station(i), (i & 1) == 0 ? station(i + 1) : neighbours[i & (PICKS - 1)]) ? 1 : 0;
+            case "bfTraverse":
+                return i -> graph.bfTraverse(station(i)).size();
+            case "allReachable":
+                return i -> graph.allReachable(station(i)).size();
+            case "allConnected":
+                return i -> graph.allConnected() ? 1 : 0;
+            case "allConnectedAfterRemove":
+                //Removing an edge may split a component, which the next allConnected must check.
+                return i -> {
+                    int s = picks[i & (PICKS - 1)] % segments.length;
+                    Edge edge = segments[s];
+                    Vertex u = edge.getVertex_u();
+                    Vertex v = edge.getVertex_v();
+                    graph.removeEdge(edge);
+                    boolean connected = graph.allConnected();
+                    segments[s] = graph.insertEdge(u, v, edge.getName());
+                    return connected ? 1 : 0;
+                };
+            case "mostDirectRoute":
+                return i -> {
+                    ArrayList<Edge> route = graph.mostDirectRoute(station(i), station(i + 1));
+                    return route == null ? -1 : route.size();
+                };
+            default:
+                throw new IllegalArgumentException("Unknown operation " + name);
+        }
+    }
+
+    private Vertex station(int i) {
+        return stations[picks[i & (PICKS - 1)]];
+    }
+}
@@ -0,0 +1,165 @@
+import java.util.Random;
+
+/**
+ * Builds synthetic graphs of a given shape and roughly a given number of edges, for the
+ * benchmarks. Each shape stresses a different part of the graph code:
+ *
+ * <pre>
+ * grid        a square lattice: many routes of equal length between most pairs of stations
+ * scaleFree   preferential attachment: a few hubs with very high degree, most stations with 2
+ * corridors   eight very long lines meeting at one hub: searches run thousands of levels deep
+ * components  thousands of small separate networks: most pairs of stations are unreachable
+ * rail        a realistic network from RailNetworkGenerator, with 1.1 segments per station
+ * </pre>
+ *
+ * The same shape, size and seed always give the same graph.
+ */
+public class GraphShapes {
+    /**
+     * The names of the shapes, as accepted by build.
+     */
+    public static final String[] SHAPES = {"grid", "scaleFree", "corridors", "components", "rail"};
+
+    /**
+     * Build a graph of the named shape.
+     *
+     * @param shape one of SHAPES
+     * @param edges roughly how many edges it should have
+     * @param seed  seed for the random choices
+     * @return a new graph
+     */
+    public static Graph build(String shape, int edges, long seed) {
+        switch (shape) {
+            case "grid":
+                return grid(edges);
+            case "scaleFree":
+                return scaleFree(edges, seed);
+            case "corridors":
+                return corridors(edges);
+            case "components":
+                return components(edges, seed);
+            case "rail":
+                int stations = Math.max(2, (int) (edges / 1.1));
+                return new RailNetworkGenerator(seed, stations, Math.max(stations - 1, edges)).generate();
+            default:
+                throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+    }
+
+    /**
+     * Build a k by k grid, where k is chosen to give about the given number of edges.
+     *
+     * @param edges roughly how many edges it should have
+     * @return a new graph
+     */
+    public static Graph grid(int edges) {
+        //A k by k grid has 2k(k - 1) edges.
+        int k = Math.max(2, (int) Math.round(Math.sqrt(edges / 2.0)));
+        Graph graph = new Graph();
+        Vertex[] stations = new Vertex[k * k];
+        for (int i = 0; i < stations.length; i++) {
+            stations[i] = graph.insertVertex("S" + i);
+        }
+        for (int row = 0; row < k; row++) {
+            for (int column = 0; column < k; column++) {
+                int i = row * k + column;
+                if (column + 1 < k) {
+                    graph.insertEdge(stations[i], stations[i + 1], "Row " + row);
+                }
+                if (row + 1 < k) {
+                    graph.insertEdge(stations[i], stations[i + k], "Column " + column);
+                }
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Build a scale-free graph by preferential attachment: each new station is joined to two
+     * existing ones, chosen with probability proportional to their degree.
+     *
+     * @param edges roughly how many edges it should have
+     * @param seed  seed for the random choices
+     * @return a new graph
+     */
+    public static Graph scaleFree(int edges, long seed) {
+        Random random = new Random(seed);
+        int n = Math.max(3, edges / 2);
+        Graph graph = new Graph();
+        Vertex[] stations = new Vertex[n];
+        //Every edge puts both of its ends in here, so a uniform pick from it is a pick by degree.
+        int[] ends = new int[2 * (2 * n + 3)];
+        int endCount = 0;
+        for (int i = 0; i < 3; i++) {
+            stations[i] = graph.insertVertex("S" + i);
+        }
+        for (int i = 0; i < 3; i++) {
+            graph.insertEdge(stations[i], stations[(i + 1) % 3], "Core");
+            ends[endCount++] = i;
+            ends[endCount++] = (i + 1) % 3;
+        }
+        for (int i = 3; i < n; i++) {
+            stations[i] = graph.insertVertex("S" + i);
+            int first = ends[random.nextInt(endCount)];
+            int second = ends[random.nextInt(endCount)];
+            if (second == first) {
+                second = ends[random.nextInt(endCount)];
+            }
+            graph.insertEdge(stations[i], stations[first], "L" + i);
+            graph.insertEdge(stations[i], stations[second], "L" + i);
+            ends[endCount++] = i;
+            ends[endCount++] = first;
+            ends[endCount++] = i;
+            ends[endCount++] = second;
+        }
+        return graph;
+    }
+
+    /**
+     * Build eight lines of equal length meeting at a single hub.
+     *
+     * @param edges roughly how many edges it should have
+     * @return a new graph
+     */
+    public static Graph corridors(int edges) {
+        int length = Math.max(1, edges / 8);
+        Graph graph = new Graph();
+        Vertex hub = graph.insertVertex("Hub");
+        for (int line = 0; line < 8; line++) {
+            Vertex previous = hub;
+            for (int i = 0; i < length; i++) {
+                Vertex next = graph.insertVertex("C" + line + "-" + i);
+                graph.insertEdge(previous, next, "Corridor " + line);
+                previous = next;
+            }
+        }
+        return graph;
+    }
+
+    /**
+     * Build many separate networks of ten stations each: a line of ten, with three extra edges
+     * between random stations on it.
+     *
+     * @param edges roughly how many edges it should have
+     * @param seed  seed for the random choices
+     * @return a new graph
+     */
+    public static Graph components(int edges, long seed) {
+        Random random = new Random(seed);
+        int count = Math.max(1, edges / 12);
+        Graph graph = new Graph();
+        Vertex[] stations = new Vertex[10];
+        for (int c = 0; c < count; c++) {
+            for (int i = 0; i < stations.length; i++) {
+                stations[i] = graph.insertVertex("N" + c + "-" + i);
+                if (i > 0) {
+                    graph.insertEdge(stations[i - 1], stations[i], "Network " + c);
+                }
+            }
+            for (int i = 0; i < 3; i++) {
+                graph.insertEdge(stations[random.nextInt(stations.length)], stations[random.nextInt(stations.length)], "Link " + c);
+            }
+        }
+        return graph;
+    }
+}
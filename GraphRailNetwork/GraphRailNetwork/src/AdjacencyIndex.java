@@ -0,0 +1,160 @@
+import java.util.Arrays;
+
+/**
+ * A hash index of the vertex pairs joined by at least one edge, used to answer adjacency
+ * questions in O(1) expected time. Edges are undirected, so a pair is stored with the smaller
+ * vertex key first and (v, w) and (w, v) are the same pair. Each pair keeps a count of the edges
+ * joining it, so removing one of several parallel edges leaves the pair adjacent.
+ *
+ * The pairs are packed into longs and kept in an open-addressing table with linear probing, so
+ * no objects are allocated per edge.
+ */
+public class AdjacencyIndex {
+    private static final long EMPTY = -1L; // only the pair (-1, -1) packs to this, and -1 is never a vertex key
+
+    private long[] pairs;
+    private int[] counts;
+    private int size; // number of distinct pairs in the table
+
+    /**
+     * Construct an empty index.
+     */
+    public AdjacencyIndex() {
+        this(16);
+    }
+
+    /**
+     * Construct an empty index sized for the given number of pairs.
+     *
+     * @param expected the number of pairs expected
+     */
+    public AdjacencyIndex(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        allocate(capacity);
+    }
+
+    /**
+     * Record an edge between vertices with keys a and b.
+     *
+     * @param a a vertex key
+     * @param b a vertex key
+     */
+    public void add(int a, int b) {
+        long pair = pack(a, b);
+        int slot = find(pair);
+        if (pairs[slot] == pair) {
+            counts[slot]++;
+            return;
+        }
+        pairs[slot] = pair;
+        counts[slot] = 1;
+        if (++size * 2 > pairs.length) {
+            resize();
+        }
+    }
+
+    /**
+     * Forget one edge between vertices with keys a and b. Returns false if there was no such edge.
+     *
+     * @param a a vertex key
+     * @param b a vertex key
+     * @return boolean
+     */
+    public boolean remove(int a, int b) {
+        long pair = pack(a, b);
+        int slot = find(pair);
+        if (pairs[slot] != pair) {
+            return false;
+        }
+        if (--counts[slot] == 0) {
+            delete(slot);
+        }
+        return true;
+    }
+
+    /**
+     * Check whether at least one edge joins the vertices with keys a and b.
+     *
+     * @param a a vertex key
+     * @param b a vertex key
+     * @return boolean
+     */
+    public boolean contains(int a, int b) {
+        long pair = pack(a, b);
+        return pair != EMPTY && pairs[find(pair)] == pair;
+    }
+
+    /**
+     * Get the number of distinct adjacent pairs.
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    //Pack a pair of keys into a long, smaller key in the high half. The low half is masked so
+    //that a negative key does not spill into the high half.
+    private static long pack(int a, int b) {
+        return a < b ? ((long) a << 32) | (b & 0xFFFFFFFFL) : ((long) b << 32) | (a & 0xFFFFFFFFL);
+    }
+
+    //Find the slot holding pair, or the empty slot where it would go.
+    private int find(long pair) {
+        int mask = pairs.length - 1;
+        int slot = mix(pair) & mask;
+        while (pairs[slot] != EMPTY && pairs[slot] != pair) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    //Spread the bits of a pair so that neighbouring keys do not cluster.
+    private static int mix(long pair) {
+        long h = pair * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    //Empty a slot, shifting later entries of the same probe run back so that lookups still
+    //find them without the need for tombstones.
+    private void delete(int slot) {
+        int mask = pairs.length - 1;
+        int gap = slot;
+        int next = (gap + 1) & mask;
+        while (pairs[next] != EMPTY) {
+            int home = mix(pairs[next]) & mask;
+            //Move the entry back if its home slot is not between the gap and its current slot.
+            if (((next - home) & mask) >= ((next - gap) & mask)) {
+                pairs[gap] = pairs[next];
+                counts[gap] = counts[next];
+                gap = next;
+            }
+            next = (next + 1) & mask;
+        }
+        pairs[gap] = EMPTY;
+        counts[gap] = 0;
+        size--;
+    }
+
+    private void resize() {
+        long[] oldPairs = pairs;
+        int[] oldCounts = counts;
+        allocate(oldPairs.length * 2);
+        for (int i = 0; i < oldPairs.length; i++) {
+            if (oldPairs[i] != EMPTY) {
+                int slot = find(oldPairs[i]);
+                pairs[slot] = oldPairs[i];
+                counts[slot] = oldCounts[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        pairs = new long[capacity];
+        counts = new int[capacity];
+        Arrays.fill(pairs, EMPTY);
+    }
+}
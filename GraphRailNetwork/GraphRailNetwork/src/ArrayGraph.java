@@ -0,0 +1,607 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * An implementation of the GraphADT interface that keeps the whole graph in parallel primitive
+ * arrays instead of one object per vertex and edge, for networks so large that the object
+ * overhead of Graph would fill the heap.
+ *
+ * Vertices and edges are numbered slots. A vertex slot holds the vertex's name as a number in
+ * a string table, the first arc of its incidence sequence and its degree. An edge slot holds its
+ * end vertices and name number, and is also two arcs, 2e on the side of u and 2e+1 on the side
+ * of v. The arcs of each vertex form a doubly linked list through the nextArc and prevArc arrays,
+ * so an edge can be added or removed in O(1). All told, a vertex takes 16 bytes and an edge 32,
+ * plus the adjacency index and one copy of each distinct name.
+ *
+ * Vertex and Edge objects are only made at the API boundary, as views onto a slot: they hold
+ * the slot number and nothing else of their own, and read everything else from the arrays. A
+ * new view is made each time one is handed out, so views must be compared with equals rather
+ * than ==. The slots of removed vertices and edges are reused, but each slot also counts how
+ * many times it has been freed, so a view of a removed vertex or edge is never mistaken for
+ * whatever takes its place.
+ *
+ * The string table only grows, so the names of removed vertices and edges stay in it.
+ */
+public class ArrayGraph implements GraphADT {
+    private static final int DEAD = -1;
+
+    //Vertex slots.
+    private int[] vertexName = new int[16];
+    private int[] firstArc = new int[16];
+    private int[] degree = new int[16];      // DEAD for a free slot
+    private int[] vertexRound = new int[16]; // times the slot has been freed
+    private int vertexSlots = 0;             // slots in use or freed; the rest have never been used
+    private int vertexCount = 0;
+    private int[] freeVertices = new int[16];
+    private int freeVertexCount = 0;
+
+    //Edge slots, and the two arcs of each edge.
+    private int[] edgeU = new int[16]; // DEAD for a free slot
+    private int[] edgeV = new int[16];
+    private int[] edgeName = new int[16];
+    private int[] edgeRound = new int[16];
+    private int[] nextArc = new int[32];
+    private int[] prevArc = new int[32];
+    private int edgeSlots = 0;
+    private int edgeCount = 0;
+    private int[] freeEdges = new int[16];
+    private int freeEdgeCount = 0;
+
+    private final ArrayList<String> strings = new ArrayList<>();
+    private final HashMap<String, Integer> stringIds = new HashMap<>();
+    private final AdjacencyIndex adjacency = new AdjacencyIndex(); // keyed by vertex slot
+
+    /**
+     * Constructs a new "blank" graph.
+     */
+    public ArrayGraph() {
+    }
+
+    /**
+     * Insert a vertex with name n into the graph.
+     *
+     * @param n String
+     * @return a view of the new vertex
+     */
+    public Vertex insertVertex(String n) {
+        int id;
+        if (freeVertexCount > 0) {
+            id = freeVertices[--freeVertexCount];
+        } else {
+            id = vertexSlots++;
+            if (id == degree.length) {
+                int capacity = id * 2;
+                vertexName = Arrays.copyOf(vertexName, capacity);
+                firstArc = Arrays.copyOf(firstArc, capacity);
+                degree = Arrays.copyOf(degree, capacity);
+                vertexRound = Arrays.copyOf(vertexRound, capacity);
+            }
+        }
+        vertexName[id] = stringId(n);
+        firstArc[id] = -1;
+        degree[id] = 0;
+        vertexCount++;
+
+        return new VertexView(id, vertexRound[id]);
+    }
+
+    /**
+     * Remove the given vertex and every edge incident to it from the graph.
+     *
+     * @param v a vertex
+     * @return the name of the vertex, or null if it is not in the graph
+     */
+    public String removeVertex(Vertex v) {
+        int id = slot(v);
+        if (id < 0) {
+            return null;
+        }
+        while (firstArc[id] >= 0) {
+            removeSlot(firstArc[id] >> 1);
+        }
+        String name = string(vertexName[id]);
+        degree[id] = DEAD;
+        vertexRound[id]++;
+        if (freeVertexCount == freeVertices.length) {
+            freeVertices = Arrays.copyOf(freeVertices, freeVertexCount * 2);
+        }
+        freeVertices[freeVertexCount++] = id;
+        vertexCount--;
+
+        return name;
+    }
+
+    /**
+     * Insert an edge with end vertices u and v and name n into the graph. Returns null if
+     * either vertex is not in the graph.
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @param n String
+     * @return a view of the new edge
+     */
+    public Edge insertEdge(Vertex u, Vertex v, String n) {
+        int a = slot(u);
+        int b = slot(v);
+        if (a < 0 || b < 0) {
+            return null;
+        }
+
+        int e;
+        if (freeEdgeCount > 0) {
+            e = freeEdges[--freeEdgeCount];
+        } else {
+            e = edgeSlots++;
+            if (e == edgeU.length) {
+                int capacity = e * 2;
+                edgeU = Arrays.copyOf(edgeU, capacity);
+                edgeV = Arrays.copyOf(edgeV, capacity);
+                edgeName = Arrays.copyOf(edgeName, capacity);
+                edgeRound = Arrays.copyOf(edgeRound, capacity);
+                nextArc = Arrays.copyOf(nextArc, capacity * 2);
+                prevArc = Arrays.copyOf(prevArc, capacity * 2);
+            }
+        }
+        edgeU[e] = a;
+        edgeV[e] = b;
+        edgeName[e] = stringId(n);
+        //A self-loop only appears once in its vertex's sequence.
+        link(a, 2 * e);
+        if (a != b) {
+            link(b, 2 * e + 1);
+        }
+        adjacency.add(a, b);
+        edgeCount++;
+
+        return new EdgeView(e, edgeRound[e]);
+    }
+
+    /**
+     * Remove the edge e from the graph.
+     *
+     * @param e the edge to be removed
+     * @return the name of the edge, or null if it is not in the graph
+     */
+    public String removeEdge(Edge e) {
+        int id = slot(e);
+        return id < 0 ? null : removeSlot(id);
+    }
+
+    /**
+     * Return the end vertex of edge e opposite to the end vertex w.
+     *
+     * @param e an edge
+     * @param w a vertex
+     * @return a view of the opposite vertex, or null if e is not in the graph or w is not an end
+     * vertex of it
+     */
+    public Vertex opposite(Edge e, Vertex w) {
+        int id = slot(e);
+        int end = slot(w);
+        if (id < 0 || end < 0) {
+            return null;
+        }
+        if (edgeU[id] == end) {
+            return view(edgeV[id]);
+        }
+        return edgeV[id] == end ? view(edgeU[id]) : null;
+    }
+
+    /**
+     * Return a list of views of all of the vertices in the graph, in slot order.
+     *
+     * @return ArrayList<Vertex>
+     */
+    public ArrayList<Vertex> vertices() {
+        ArrayList<Vertex> list = new ArrayList<>(vertexCount);
+        for (int id = 0; id < vertexSlots; id++) {
+            if (degree[id] != DEAD) {
+                list.add(view(id));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Return a list of views of all of the edges in the graph, in slot order.
+     *
+     * @return ArrayList<Edge>
+     */
+    public ArrayList<Edge> edges() {
+        ArrayList<Edge> list = new ArrayList<>(edgeCount);
+        for (int e = 0; e < edgeSlots; e++) {
+            if (edgeU[e] != DEAD) {
+                list.add(new EdgeView(e, edgeRound[e]));
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Check in O(1) expected time whether two vertices are joined by an edge.
+     *
+     * @param v a vertex
+     * @param w a vertex
+     * @return boolean
+     */
+    public boolean areAdjacent(Vertex v, Vertex w) {
+        int a = slot(v);
+        int b = slot(w);
+        return a >= 0 && b >= 0 && adjacency.contains(a, b);
+    }
+
+    /**
+     * Return a list of views of the edges incident to v.
+     *
+     * @param v a vertex
+     * @return ArrayList<Edge>, empty if v is not in the graph
+     */
+    public ArrayList<Edge> incidentEdges(Vertex v) {
+        int id = slot(v);
+        if (id < 0) {
+            return new ArrayList<>();
+        }
+        ArrayList<Edge> list = new ArrayList<>(degree[id]);
+        for (int arc = firstArc[id]; arc >= 0; arc = nextArc[arc]) {
+            list.add(new EdgeView(arc >> 1, edgeRound[arc >> 1]));
+        }
+        return list;
+    }
+
+    /**
+     * Rename vertex v as n.
+     *
+     * @param v a vertex
+     * @param n the new name
+     * @return the old name, or null if v is not in the graph
+     */
+    public String rename(Vertex v, String n) {
+        int id = slot(v);
+        if (id < 0) {
+            return null;
+        }
+        String old = string(vertexName[id]);
+        vertexName[id] = stringId(n);
+        return old;
+    }
+
+    /**
+     * Rename edge e as n.
+     *
+     * @param e an edge
+     * @param n the new name
+     * @return the old name, or null if e is not in the graph
+     */
+    public String rename(Edge e, String n) {
+        int id = slot(e);
+        if (id < 0) {
+            return null;
+        }
+        String old = string(edgeName[id]);
+        edgeName[id] = stringId(n);
+        return old;
+    }
+
+    /**
+     * Get the number of vertices in the graph.
+     *
+     * @return int
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Get the number of edges in the graph.
+     *
+     * @return int
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Perform a breadth-first search traversal of the connected component that contains v,
+     * straight over the arrays.
+     *
+     * @param v a vertex to start from
+     * @return a list of views of the vertices in the order visited, or an empty list if v is not
+     * in the graph
+     */
+    public ArrayList<Vertex> bfTraverse(Vertex v) {
+        int start = slot(v);
+        if (start < 0) {
+            return new ArrayList<>();
+        }
+        boolean[] visited = new boolean[vertexSlots];
+        int[] queue = new int[vertexCount];
+        int head = 0;
+        int tail = 0;
+        visited[start] = true;
+        queue[tail++] = start;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = firstArc[current]; arc >= 0; arc = nextArc[arc]) {
+                int e = arc >> 1;
+                int next = edgeU[e] == current ? edgeV[e] : edgeU[e];
+                if (!visited[next]) {
+                    visited[next] = true;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        ArrayList<Vertex> order = new ArrayList<>(tail);
+        for (int i = 0; i < tail; i++) {
+            order.add(view(queue[i]));
+        }
+        return order;
+    }
+
+    //Take edge slot e out of the graph and free it. Returns its name.
+    private String removeSlot(int e) {
+        int a = edgeU[e];
+        int b = edgeV[e];
+        unlink(a, 2 * e);
+        if (a != b) {
+            unlink(b, 2 * e + 1);
+        }
+        adjacency.remove(a, b);
+        String name = string(edgeName[e]);
+        edgeU[e] = DEAD;
+        edgeRound[e]++;
+        if (freeEdgeCount == freeEdges.length) {
+            freeEdges = Arrays.copyOf(freeEdges, freeEdgeCount * 2);
+        }
+        freeEdges[freeEdgeCount++] = e;
+        edgeCount--;
+        return name;
+    }
+
+    //Add an arc to the front of vertex id's incidence sequence.
+    private void link(int id, int arc) {
+        prevArc[arc] = -1;
+        nextArc[arc] = firstArc[id];
+        if (firstArc[id] >= 0) {
+            prevArc[firstArc[id]] = arc;
+        }
+        firstArc[id] = arc;
+        degree[id]++;
+    }
+
+    //Take an arc out of vertex id's incidence sequence.
+    private void unlink(int id, int arc) {
+        if (prevArc[arc] >= 0) {
+            nextArc[prevArc[arc]] = nextArc[arc];
+        } else {
+            firstArc[id] = nextArc[arc];
+        }
+        if (nextArc[arc] >= 0) {
+            prevArc[nextArc[arc]] = prevArc[arc];
+        }
+        degree[id]--;
+    }
+
+    private int stringId(String s) {
+        if (s == null) {
+            return -1;
+        }
+        Integer id = stringIds.get(s);
+        if (id == null) {
+            id = strings.size();
+            strings.add(s);
+            stringIds.put(s, id);
+        }
+        return id;
+    }
+
+    private String string(int id) {
+        return id < 0 ? null : strings.get(id);
+    }
+
+    private Vertex view(int id) {
+        return new VertexView(id, vertexRound[id]);
+    }
+
+    //The slot a vertex view stands for, or -1 if it is not a current view of this graph.
+    private int slot(Vertex v) {
+        if (!(v instanceof VertexView)) {
+            return -1;
+        }
+        VertexView view = (VertexView) v;
+        return view.graph() == this && degree[view.id] != DEAD && vertexRound[view.id] == view.round ? view.id : -1;
+    }
+
+    //The slot an edge view stands for, or -1 if it is not a current view of this graph.
+    private int slot(Edge e) {
+        if (!(e instanceof EdgeView)) {
+            return -1;
+        }
+        EdgeView view = (EdgeView) e;
+        return view.graph() == this && edgeU[view.id] != DEAD && edgeRound[view.id] == view.round ? view.id : -1;
+    }
+
+    //Views reject any change the arrays cannot record, rather than keep it where it would be lost.
+    private static UnsupportedOperationException notKept(String what) {
+        return new UnsupportedOperationException("An ArrayGraph does not keep " + what);
+    }
+
+    //A vertex as seen from outside: a slot number, and the round of the slot it belongs to.
+    private class VertexView extends Vertex {
+        private final int id;
+        private final int round;
+
+        VertexView(int id, int round) {
+            this.id = id;
+            this.round = round;
+        }
+
+        ArrayGraph graph() {
+            return ArrayGraph.this;
+        }
+
+        private boolean current() {
+            return slot(this) >= 0;
+        }
+
+        @Override
+        public String getName() {
+            return current() ? string(vertexName[id]) : null;
+        }
+
+        @Override
+        public void setName(String n) {
+            rename(this, n);
+        }
+
+        @Override
+        public ArrayList<Edge> getIncidentEdges() {
+            return incidentEdges(this);
+        }
+
+        //The arrays have nowhere to keep a location, and only a Graph, which will not take a
+        //view, gives vertices positions.
+        @Override
+        protected void setLocation(double lat, double lon) {
+            throw notKept("locations");
+        }
+
+        @Override
+        protected void setIndex(int i) {
+            throw notKept("list positions");
+        }
+
+        @Override
+        protected void reserveIncidentEdges(int n) {
+        }
+
+        @Override
+        public int degree() {
+            return current() ? degree[id] : 0;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof VertexView)) {
+                return false;
+            }
+            VertexView other = (VertexView) o;
+            return other.graph() == graph() && other.id == id && other.round == round;
+        }
+
+        @Override
+        public int hashCode() {
+            return id * 31 + round;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getName());
+        }
+    }
+
+    //An edge as seen from outside: a slot number, and the round of the slot it belongs to.
+    private class EdgeView extends Edge {
+        private final int id;
+        private final int round;
+
+        EdgeView(int id, int round) {
+            super(null, null, null);
+            this.id = id;
+            this.round = round;
+        }
+
+        ArrayGraph graph() {
+            return ArrayGraph.this;
+        }
+
+        private boolean current() {
+            return slot(this) >= 0;
+        }
+
+        @Override
+        protected boolean isView() {
+            return true;
+        }
+
+        @Override
+        public Vertex getVertex_u() {
+            return current() ? view(edgeU[id]) : null;
+        }
+
+        @Override
+        public Vertex getVertex_v() {
+            return current() ? view(edgeV[id]) : null;
+        }
+
+        @Override
+        public String getName() {
+            return current() ? string(edgeName[id]) : null;
+        }
+
+        @Override
+        public void setName(String n) {
+            rename(this, n);
+        }
+
+        @Override
+        protected void setTravelTime(double t) {
+            throw notKept("weights");
+        }
+
+        @Override
+        protected void setDistance(double d) {
+            throw notKept("weights");
+        }
+
+        @Override
+        protected void setIndex(Vertex w, int i) {
+            throw notKept("list positions");
+        }
+
+        @Override
+        protected void setPosition(int i) {
+            throw notKept("list positions");
+        }
+
+        //The position of the edge in v's incidence sequence, found by walking along it.
+        @Override
+        public int getIndex(Vertex v) {
+            int end = slot(v);
+            if (!current() || end < 0) {
+                return -1;
+            }
+            int i = 0;
+            for (int arc = firstArc[end]; arc >= 0; arc = nextArc[arc], i++) {
+                if (arc >> 1 == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void removeVertices() {
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof EdgeView)) {
+                return false;
+            }
+            EdgeView other = (EdgeView) o;
+            return other.graph() == graph() && other.id == id && other.round == round;
+        }
+
+        @Override
+        public int hashCode() {
+            return id * 31 + round;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getName());
+        }
+    }
+}
@@ -0,0 +1,238 @@
+import java.util.ArrayList;
+
+/**
+ * An immutable, int-indexed snapshot of a graph in compressed sparse row (CSR) form.
+ * Vertices are numbered 0 to |V|-1 and edges 0 to |E|-1. The arcs leaving vertex i are
+ * stored in positions offsets[i] to offsets[i+1]-1 of the neighbours and edgeIds arrays, in
+ * the same order as the edges appear in the graph. A self-loop contributes a single arc.
+ *
+ * Traversals over a snapshot only touch primitive arrays; the Vertex and Edge objects are
+ * only needed to translate results back at the end.
+ */
+public class CompactGraph {
+    private static final double POLAR_RADIUS_KM = 6356.752;
+
+    private final Vertex[] vertices;
+    private final Edge[] edges;
+    private final int[] offsets;    // length |V|+1
+    private final int[] neighbours; // the vertex at the other end of each arc
+    private final int[] edgeIds;    // the edge each arc belongs to
+    private final double[] travelTimes; // travel time of each edge
+    private final double[] distances;   // length of each edge
+    private final double[] latitudes;   // latitude of each vertex in radians, NaN if not known
+    private final double[] longitudes;  // longitude of each vertex in radians, NaN if not known
+
+    /**
+     * Build a snapshot of the given graph. Vertex i of the snapshot is the vertex at position i
+     * of the graph's vertex list, and edge e the edge at position e of its edge list.
+     *
+     * @param graph the graph
+     */
+    public CompactGraph(Graph graph) {
+        ArrayList<Edge> edgeList = graph.edges();
+        int n = graph.vertices().size();
+        vertices = graph.vertices().toArray(new Vertex[0]);
+        latitudes = new double[n];
+        longitudes = new double[n];
+        for (int i = 0; i < n; i++) {
+            latitudes[i] = Math.toRadians(vertices[i].getLatitude());
+            longitudes[i] = Math.toRadians(vertices[i].getLongitude());
+        }
+
+        //Count the degree of every vertex, then turn the counts into offsets.
+        offsets = new int[n + 1];
+        int arcs = 0;
+        for (Edge edge : edgeList) {
+            int a = edge.getVertex_u().getIndex();
+            int b = edge.getVertex_v().getIndex();
+            offsets[a + 1]++;
+            arcs++;
+            if (a != b) {
+                offsets[b + 1]++;
+                arcs++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] += offsets[i];
+        }
+
+        //Fill the arcs in edge order, using a moving cursor per vertex.
+        edges = edgeList.toArray(new Edge[0]);
+        neighbours = new int[arcs];
+        edgeIds = new int[arcs];
+        travelTimes = new double[edges.length];
+        distances = new double[edges.length];
+        int[] cursor = new int[n];
+        System.arraycopy(offsets, 0, cursor, 0, n);
+        for (int e = 0; e < edges.length; e++) {
+            int a = edges[e].getVertex_u().getIndex();
+            int b = edges[e].getVertex_v().getIndex();
+            travelTimes[e] = edges[e].getTravelTime();
+            distances[e] = edges[e].getDistance();
+            neighbours[cursor[a]] = b;
+            edgeIds[cursor[a]++] = e;
+            if (a != b) {
+                neighbours[cursor[b]] = a;
+                edgeIds[cursor[b]++] = e;
+            }
+        }
+    }
+
+    /**
+     * Get the number of vertices in the snapshot.
+     *
+     * @return int
+     */
+    public int vertexCount() {
+        return vertices.length;
+    }
+
+    /**
+     * Get the number of edges in the snapshot.
+     *
+     * @return int
+     */
+    public int edgeCount() {
+        return edges.length;
+    }
+
+    /**
+     * Get the index of vertex v in the snapshot, or -1 if v is not part of it.
+     *
+     * @param v a vertex
+     * @return int
+     */
+    public int indexOf(Vertex v) {
+        if (v == null) {
+            return -1;
+        }
+        int i = v.getIndex();
+        return i >= 0 && i < vertices.length && vertices[i] == v ? i : -1;
+    }
+
+    /**
+     * Get the vertex with index i.
+     *
+     * @param i a vertex index
+     * @return Vertex
+     */
+    public Vertex vertex(int i) {
+        return vertices[i];
+    }
+
+    /**
+     * Get the edge with index e.
+     *
+     * @param e an edge index
+     * @return Edge
+     */
+    public Edge edge(int e) {
+        return edges[e];
+    }
+
+    /**
+     * Get the number of arcs leaving vertex i.
+     *
+     * @param i a vertex index
+     * @return int
+     */
+    public int degree(int i) {
+        return offsets[i + 1] - offsets[i];
+    }
+
+    /**
+     * Get the position of the first arc leaving vertex i.
+     *
+     * @param i a vertex index
+     * @return int
+     */
+    public int firstArc(int i) {
+        return offsets[i];
+    }
+
+    /**
+     * Get the position one past the last arc leaving vertex i.
+     *
+     * @param i a vertex index
+     * @return int
+     */
+    public int endArc(int i) {
+        return offsets[i + 1];
+    }
+
+    /**
+     * Get the vertex at the far end of an arc.
+     *
+     * @param arc an arc position
+     * @return int vertex index
+     */
+    public int target(int arc) {
+        return neighbours[arc];
+    }
+
+    /**
+     * Get the edge an arc belongs to.
+     *
+     * @param arc an arc position
+     * @return int edge index
+     */
+    public int edgeId(int arc) {
+        return edgeIds[arc];
+    }
+
+    /**
+     * Get the travel time of the edge with index e.
+     *
+     * @param e an edge index
+     * @return double
+     */
+    public double travelTime(int e) {
+        return travelTimes[e];
+    }
+
+    /**
+     * Get the length of the edge with index e.
+     *
+     * @param e an edge index
+     * @return double
+     */
+    public double distance(int e) {
+        return distances[e];
+    }
+
+    /**
+     * Get a lower bound on the length of any route between vertices i and j: the great-circle
+     * distance between them in kilometres, or 0 if either location is not known. The polar
+     * radius of the Earth is used, so the bound stays below the true distance over the surface.
+     *
+     * @param i a vertex index
+     * @param j a vertex index
+     * @return double
+     */
+    public double greatCircle(int i, int j) {
+        double lat1 = latitudes[i], lat2 = latitudes[j];
+        if (Double.isNaN(lat1) || Double.isNaN(lat2) || Double.isNaN(longitudes[i]) || Double.isNaN(longitudes[j])) {
+            return 0;
+        }
+        //Haversine formula.
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin((longitudes[j] - longitudes[i]) / 2);
+        double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * POLAR_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+
+    /**
+     * Translate a list of vertex indices back into vertices.
+     *
+     * @param ids   vertex indices
+     * @param count how many of the indices to translate
+     * @return ArrayList<Vertex>
+     */
+    public ArrayList<Vertex> toVertices(int[] ids, int count) {
+        ArrayList<Vertex> list = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            list.add(vertices[ids[i]]);
+        }
+        return list;
+    }
+}
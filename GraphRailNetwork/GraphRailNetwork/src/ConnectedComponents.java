@@ -0,0 +1,208 @@
+import java.util.Arrays;
+
+/**
+ * Keeps track of the connected components of a graph with a union-find structure over vertex
+ * indices. Inserting vertices and edges updates the structure directly. Removing them can split
+ * a component, which union-find cannot undo, so a removal only marks the structure as stale and
+ * it is rebuilt from the graph's edges the next time it is queried.
+ *
+ * Queries read an immutable labelling published after each change: the component number of
+ * every vertex and the size of every component, in plain arrays behind a volatile reference. So
+ * any number of threads can query at once without locking. Only the first query after a change
+ * locks, to bring the union-find structure up to date and publish a new labelling from it, which
+ * takes O(n) time. componentCount does not need the labelling, and after an insertion costs only
+ * O(1) under the lock.
+ *
+ * The labelling is only right if the graph reports every change, so the class and its update
+ * methods are package-private and only Graph uses them.
+ */
+class ConnectedComponents {
+    private final Graph graph;
+    private int[] parent = new int[16]; // parent of each vertex in its tree; roots point to themselves
+    private int[] size = new int[16];   // number of vertices in the tree, valid for roots only
+    private int vertexCount;
+    private int componentCount;
+    private boolean stale = true;
+    private volatile Labels labels; // null if there has been a change since it was published
+
+    /**
+     * Construct the components of the given graph. The structure is built on the first query.
+     *
+     * @param graph the graph
+     */
+    ConnectedComponents(Graph graph) {
+        this.graph = graph;
+    }
+
+    /**
+     * Record that a vertex has been added at the end of the graph's vertex list.
+     */
+    synchronized void vertexInserted() {
+        labels = null;
+        if (!stale) {
+            addSingleton();
+        }
+    }
+
+    /**
+     * Record that an edge has been added between the vertices with indices a and b.
+     *
+     * @param a a vertex index
+     * @param b a vertex index
+     */
+    synchronized void edgeInserted(int a, int b) {
+        labels = null;
+        if (!stale) {
+            union(a, b);
+        }
+    }
+
+    /**
+     * Record that a vertex or edge has been removed. The structure will be rebuilt when next used.
+     */
+    synchronized void removed() {
+        labels = null;
+        stale = true;
+    }
+
+    /**
+     * Get the representative of the component containing the vertex with index i. Two vertices
+     * are in the same component if and only if they have the same representative. The
+     * representative is a number from 0 to componentCount() - 1, and may change whenever the
+     * graph changes.
+     *
+     * @param i a vertex index
+     * @return int
+     */
+    public int componentOf(int i) {
+        return labels().component[i];
+    }
+
+    /**
+     * Check whether the vertices with indices a and b are in the same component.
+     *
+     * @param a a vertex index
+     * @param b a vertex index
+     * @return boolean
+     */
+    public boolean sameComponent(int a, int b) {
+        Labels current = labels();
+        return current.component[a] == current.component[b];
+    }
+
+    /**
+     * Get the number of vertices in the component containing the vertex with index i.
+     *
+     * @param i a vertex index
+     * @return int
+     */
+    public int componentSize(int i) {
+        Labels current = labels();
+        return current.sizes[current.component[i]];
+    }
+
+    /**
+     * Get the number of connected components.
+     *
+     * @return int
+     */
+    public int componentCount() {
+        Labels current = labels;
+        if (current != null) {
+            return current.sizes.length;
+        }
+        synchronized (this) {
+            refresh();
+            return componentCount;
+        }
+    }
+
+    //The current labelling, publishing a new one first if there has been a change.
+    private Labels labels() {
+        Labels current = labels;
+        if (current != null) {
+            return current;
+        }
+        synchronized (this) {
+            if (labels == null) {
+                refresh();
+                labels = new Labels();
+            }
+            return labels;
+        }
+    }
+
+    //Rebuild the structure from the graph if anything has been removed since it was last built.
+    private void refresh() {
+        if (!stale) {
+            return;
+        }
+        vertexCount = 0;
+        componentCount = 0;
+        for (int i = 0; i < graph.vertices().size(); i++) {
+            addSingleton();
+        }
+        for (Edge edge : graph.edges()) {
+            union(edge.getVertex_u().getIndex(), edge.getVertex_v().getIndex());
+        }
+        stale = false;
+    }
+
+    private void addSingleton() {
+        if (vertexCount == parent.length) {
+            parent = Arrays.copyOf(parent, vertexCount * 2);
+            size = Arrays.copyOf(size, vertexCount * 2);
+        }
+        parent[vertexCount] = vertexCount;
+        size[vertexCount] = 1;
+        vertexCount++;
+        componentCount++;
+    }
+
+    //Find the root of i's tree, halving the path on the way.
+    private int find(int i) {
+        while (parent[i] != i) {
+            parent[i] = parent[parent[i]];
+            i = parent[i];
+        }
+        return i;
+    }
+
+    //The component of every vertex, numbered in order of their roots, and the size of each.
+    //Built under the lock from the union-find structure, and never changed afterwards.
+    private class Labels {
+        private final int[] component = new int[vertexCount];
+        private final int[] sizes = new int[componentCount];
+
+        Labels() {
+            int[] number = new int[vertexCount];
+            Arrays.fill(number, -1);
+            int next = 0;
+            for (int i = 0; i < vertexCount; i++) {
+                int root = find(i);
+                if (number[root] < 0) {
+                    number[root] = next++;
+                }
+                component[i] = number[root];
+                sizes[number[root]]++;
+            }
+        }
+    }
+
+    //Merge the trees of a and b, hanging the smaller under the larger.
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra == rb) {
+            return;
+        }
+        if (size[ra] < size[rb]) {
+            int t = ra;
+            ra = rb;
+            rb = t;
+        }
+        parent[rb] = ra;
+        size[ra] += size[rb];
+        componentCount--;
+    }
+}
@@ -0,0 +1,424 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * A contraction hierarchy over a CompactGraph, for answering most direct route queries (fewest
+ * edges) much faster than a breadth-first search once the hierarchy has been built.
+ *
+ * Building the hierarchy contracts the vertices one at a time, least important first. When a
+ * vertex is contracted, a shortcut is added between each pair of its remaining neighbours unless
+ * a witness search finds another route between them that is no longer. Each shortcut remembers
+ * the two arcs it replaces, so a route through shortcuts can be unpacked into the original edges.
+ *
+ * A query then runs Dijkstra's algorithm from both ends, only ever moving to more important
+ * vertices. Both searches stay small, as only a few vertices are more important than any given
+ * one, and the shortest route is found where they meet.
+ *
+ * A hierarchy describes the graph as it was when it was built. Graph.contractionHierarchy()
+ * builds a new one whenever vertices or edges have been inserted or removed since.
+ */
+public class ContractionHierarchy {
+    private static final int WITNESS_LIMIT = 500; // vertices settled before a witness search gives up
+
+    private final CompactGraph graph;
+    private final int[] rank; // order in which each vertex was contracted
+
+    //Arcs are the original edges (arc e is edge e) followed by the shortcuts.
+    private final IntArray arcU = new IntArray();
+    private final IntArray arcV = new IntArray();
+    private final IntArray arcWeight = new IntArray();
+    private final IntArray arcMiddle = new IntArray(); // contracted vertex of a shortcut, or -1
+    private final IntArray arcFirst = new IntArray();  // shortcut part between arcU and the middle
+    private final IntArray arcSecond = new IntArray(); // shortcut part between the middle and arcV
+
+    //Upward graph in CSR form: the arcs from each vertex to more important vertices.
+    private final int[] upOffsets;
+    private final int[] upTargets;
+    private final int[] upArcs;
+
+    private final ThreadLocal<SearchState> forwardStates = ThreadLocal.withInitial(SearchState::new);
+    private final ThreadLocal<SearchState> backwardStates = ThreadLocal.withInitial(SearchState::new);
+
+    /**
+     * Build a contraction hierarchy for the given snapshot.
+     *
+     * @param graph the snapshot
+     */
+    public ContractionHierarchy(CompactGraph graph) {
+        this.graph = graph;
+        int n = graph.vertexCount();
+        rank = new int[n];
+
+        //Start with one arc per edge. Self-loops never help a route, so they are left out of
+        //the vertices' arc lists.
+        IntArray[] arcs = new IntArray[n];
+        for (int i = 0; i < n; i++) {
+            arcs[i] = new IntArray();
+        }
+        for (int e = 0; e < graph.edgeCount(); e++) {
+            addArc(graph.edge(e).getVertex_u().getIndex(), graph.edge(e).getVertex_v().getIndex(), 1, -1, -1, -1);
+        }
+        for (int i = 0; i < n; i++) {
+            for (int arc = graph.firstArc(i); arc < graph.endArc(i); arc++) {
+                if (graph.target(arc) != i) {
+                    arcs[i].add(graph.edgeId(arc));
+                }
+            }
+        }
+
+        new Builder(arcs).contractAll();
+
+        //Keep only the arcs that lead upwards, and store them in CSR form.
+        upOffsets = new int[n + 1];
+        for (int a = 0; a < arcU.size(); a++) {
+            int u = arcU.get(a), v = arcV.get(a);
+            if (u != v) {
+                upOffsets[(rank[u] < rank[v] ? u : v) + 1]++;
+            }
+        }
+        for (int i = 0; i < n; i++) {
+            upOffsets[i + 1] += upOffsets[i];
+        }
+        upTargets = new int[upOffsets[n]];
+        upArcs = new int[upOffsets[n]];
+        int[] cursor = Arrays.copyOf(upOffsets, n);
+        for (int a = 0; a < arcU.size(); a++) {
+            int u = arcU.get(a), v = arcV.get(a);
+            if (u != v) {
+                int low = rank[u] < rank[v] ? u : v;
+                upTargets[cursor[low]] = low == u ? v : u;
+                upArcs[cursor[low]++] = a;
+            }
+        }
+    }
+
+    /**
+     * Get the number of shortcuts added while building the hierarchy.
+     *
+     * @return int
+     */
+    public int shortcutCount() {
+        return arcU.size() - graph.edgeCount();
+    }
+
+    /**
+     * Find a most direct route between u and v, i.e. a route with the fewest edges; or return
+     * null if either vertex was not in the graph when the hierarchy was built, or if the two
+     * cannot be reached from one another. Where there are several most direct routes, any one
+     * of them may be returned.
+     *
+     * @param u start vertex
+     * @param v end vertex
+     * @return an ArrayList of edges
+     */
+    public ArrayList<Edge> route(Vertex u, Vertex v) {
+        int source = graph.indexOf(u);
+        int target = graph.indexOf(v);
+        if (source < 0 || target < 0) {
+            return null;
+        }
+
+        SearchState forward = forwardStates.get();
+        SearchState backward = backwardStates.get();
+        forward.begin(graph.vertexCount());
+        backward.begin(graph.vertexCount());
+        forward.reach(source, -1, -1);
+        forward.setCost(source, 0);
+        forward.heap().push(source, 0);
+        backward.reach(target, -1, -1);
+        backward.setCost(target, 0);
+        backward.heap().push(target, 0);
+
+        //Alternate between the two upward searches until neither can beat the best meeting.
+        double best = Double.POSITIVE_INFINITY;
+        int meeting = -1;
+        boolean fromStart = true;
+        while (!forward.heap().isEmpty() || !backward.heap().isEmpty()) {
+            SearchState near = fromStart ? forward : backward;
+            SearchState far = fromStart ? backward : forward;
+            fromStart = !fromStart;
+            if (near.heap().isEmpty() || near.heap().peekPriority() >= best) {
+                if (far.heap().isEmpty() || far.heap().peekPriority() >= best) {
+                    break;
+                }
+                continue;
+            }
+
+            int current = near.heap().poll();
+            if (far.isReached(current) && near.cost(current) + far.cost(current) < best) {
+                best = near.cost(current) + far.cost(current);
+                meeting = current;
+            }
+            for (int i = upOffsets[current]; i < upOffsets[current + 1]; i++) {
+                int next = upTargets[i];
+                double cost = near.cost(current) + arcWeight.get(upArcs[i]);
+                if (!near.isReached(next)) {
+                    near.reach(next, current, upArcs[i]);
+                    near.setCost(next, cost);
+                    near.heap().push(next, cost);
+                } else if (cost < near.cost(next) && near.heap().contains(next)) {
+                    near.reach(next, current, upArcs[i]);
+                    near.setCost(next, cost);
+                    near.heap().decrease(next, cost);
+                }
+                if (far.isReached(next) && cost + far.cost(next) < best) {
+                    best = cost + far.cost(next);
+                    meeting = next;
+                }
+            }
+        }
+
+        if (meeting < 0) {
+            return null;
+        }
+
+        //Collect the arcs from u up to the meeting vertex, then from there down to v, and
+        //unpack each one into original edges.
+        IntArray up = new IntArray();
+        IntArray from = new IntArray();
+        for (int i = meeting; forward.prevEdge(i) >= 0; i = forward.prevVertex(i)) {
+            up.add(forward.prevEdge(i));
+            from.add(forward.prevVertex(i));
+        }
+        ArrayList<Edge> path = new ArrayList<>();
+        for (int k = up.size() - 1; k >= 0; k--) {
+            unpack(up.get(k), from.get(k), path);
+        }
+        for (int i = meeting; backward.prevEdge(i) >= 0; i = backward.prevVertex(i)) {
+            unpack(backward.prevEdge(i), i, path);
+        }
+        return path;
+    }
+
+    //Append the original edges making up an arc to path, in order from vertex start, which must
+    //be one of the arc's end vertices. An explicit stack is used, since shortcuts can nest deeply.
+    private void unpack(int arc, int start, ArrayList<Edge> path) {
+        IntArray stack = new IntArray();
+        stack.add(arc);
+        stack.add(start);
+        while (stack.size() > 0) {
+            int at = stack.pop();
+            int a = stack.pop();
+            int middle = arcMiddle.get(a);
+            if (middle < 0) {
+                path.add(graph.edge(a));
+            } else if (at == arcU.get(a)) {
+                //Push the second part first, so that the first part is unpacked first.
+                stack.add(arcSecond.get(a));
+                stack.add(middle);
+                stack.add(arcFirst.get(a));
+                stack.add(at);
+            } else {
+                stack.add(arcFirst.get(a));
+                stack.add(middle);
+                stack.add(arcSecond.get(a));
+                stack.add(at);
+            }
+        }
+    }
+
+    private int addArc(int u, int v, int weight, int middle, int first, int second) {
+        arcU.add(u);
+        arcV.add(v);
+        arcWeight.add(weight);
+        arcMiddle.add(middle);
+        arcFirst.add(first);
+        arcSecond.add(second);
+        return arcU.size() - 1;
+    }
+
+    private int other(int arc, int v) {
+        return arcU.get(arc) == v ? arcV.get(arc) : arcU.get(arc);
+    }
+
+    //The state needed only while contracting vertices.
+    private class Builder {
+        private final IntArray[] arcs;
+        private final boolean[] contracted;
+        private final int[] contractedNeighbours;
+        private final int[] level;         // one more than the highest level of a contracted neighbour
+        private final int[] bestArc;       // cheapest arc to each neighbour of the vertex being contracted
+        private final int[] neighbourMark; // which contraction bestArc refers to
+        private final IntArray neighbours = new IntArray();
+        private final SearchState witness = new SearchState();
+        private int mark = 0;
+
+        Builder(IntArray[] arcs) {
+            int n = arcs.length;
+            this.arcs = arcs;
+            contracted = new boolean[n];
+            contractedNeighbours = new int[n];
+            level = new int[n];
+            bestArc = new int[n];
+            neighbourMark = new int[n];
+        }
+
+        //Contract every vertex, taking them in order of priority and updating the priority of
+        //each vertex lazily when it reaches the front of the queue.
+        void contractAll() {
+            int n = arcs.length;
+            IndexedMinHeap queue = new IndexedMinHeap();
+            queue.ensureCapacity(n);
+            for (int i = 0; i < n; i++) {
+                queue.push(i, priority(i));
+            }
+            int next = 0;
+            while (!queue.isEmpty()) {
+                int v = queue.poll();
+                double p = priority(v);
+                if (!queue.isEmpty() && p > queue.peekPriority()) {
+                    queue.push(v, p);
+                    continue;
+                }
+                contract(v, false);
+                contracted[v] = true;
+                rank[v] = next++;
+                for (int k = 0; k < neighbours.size(); k++) {
+                    int w = neighbours.get(k);
+                    contractedNeighbours[w]++;
+                    level[w] = Math.max(level[w], level[v] + 1);
+                    removeContracted(arcs[w]);
+                }
+                arcs[v] = null;
+            }
+        }
+
+        //Vertices that would add few shortcuts and remove many arcs go first. Vertices whose
+        //neighbours have been contracted, or that sit high above earlier contractions, are held
+        //back so that contraction spreads out evenly and the hierarchy stays shallow.
+        private double priority(int v) {
+            int shortcuts = contract(v, true);
+            return 2 * (shortcuts - neighbours.size()) + contractedNeighbours[v] + level[v];
+        }
+
+        //Drop the arcs to contracted vertices from a list, as they can no longer be used.
+        private void removeContracted(IntArray list) {
+            int kept = 0;
+            for (int k = 0; k < list.size(); k++) {
+                int a = list.get(k);
+                if (!contracted[arcU.get(a)] && !contracted[arcV.get(a)]) {
+                    list.set(kept++, a);
+                }
+            }
+            list.truncate(kept);
+        }
+
+        //Find the remaining neighbours of v, then add the shortcuts needed to contract it (or
+        //only count them, if simulating). Returns the number of shortcuts. Afterwards neighbours
+        //holds the remaining neighbours of v.
+        private int contract(int v, boolean simulate) {
+            mark++;
+            neighbours.clear();
+            IntArray list = arcs[v];
+            for (int k = 0; k < list.size(); k++) {
+                int a = list.get(k);
+                int w = other(a, v);
+                if (contracted[w]) {
+                    continue;
+                }
+                if (neighbourMark[w] != mark) {
+                    neighbourMark[w] = mark;
+                    bestArc[w] = a;
+                    neighbours.add(w);
+                } else if (arcWeight.get(a) < arcWeight.get(bestArc[w])) {
+                    bestArc[w] = a;
+                }
+            }
+
+            int shortcuts = 0;
+            int maxWeight = 0;
+            for (int k = 0; k < neighbours.size(); k++) {
+                maxWeight = Math.max(maxWeight, arcWeight.get(bestArc[neighbours.get(k)]));
+            }
+            for (int i = 0; i < neighbours.size(); i++) {
+                int u = neighbours.get(i);
+                int first = bestArc[u];
+                witnessSearch(u, v, arcWeight.get(first) + maxWeight);
+                for (int j = i + 1; j < neighbours.size(); j++) {
+                    int w = neighbours.get(j);
+                    int second = bestArc[w];
+                    int weight = arcWeight.get(first) + arcWeight.get(second);
+                    if (witness.isReached(w) && witness.cost(w) <= weight) {
+                        continue;
+                    }
+                    shortcuts++;
+                    if (!simulate) {
+                        //The first part must run from u to v, and the second from v to w.
+                        int shortcut = addArc(u, w, weight, v, first, second);
+                        arcs[u].add(shortcut);
+                        arcs[w].add(shortcut);
+                    }
+                }
+            }
+            return shortcuts;
+        }
+
+        //Dijkstra from u over the vertices not yet contracted, avoiding v, giving up once the
+        //distances pass limit or too many vertices have been settled.
+        private void witnessSearch(int u, int v, int limit) {
+            witness.begin(arcs.length);
+            IndexedMinHeap heap = witness.heap();
+            witness.reach(u, -1, -1);
+            witness.setCost(u, 0);
+            heap.push(u, 0);
+            int settled = 0;
+            while (!heap.isEmpty() && heap.peekPriority() <= limit && settled++ < WITNESS_LIMIT) {
+                int current = heap.poll();
+                IntArray list = arcs[current];
+                for (int k = 0; k < list.size(); k++) {
+                    int a = list.get(k);
+                    int next = other(a, current);
+                    if (next == v || contracted[next]) {
+                        continue;
+                    }
+                    double cost = witness.cost(current) + arcWeight.get(a);
+                    if (!witness.isReached(next)) {
+                        witness.reach(next, current, a);
+                        witness.setCost(next, cost);
+                        heap.push(next, cost);
+                    } else if (cost < witness.cost(next) && heap.contains(next)) {
+                        witness.setCost(next, cost);
+                        heap.decrease(next, cost);
+                    }
+                }
+            }
+        }
+    }
+
+    //A growable array of ints.
+    private static class IntArray {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int x) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = x;
+        }
+
+        int get(int i) {
+            return values[i];
+        }
+
+        int pop() {
+            return values[--size];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void set(int i, int x) {
+            values[i] = x;
+        }
+
+        void truncate(int n) {
+            size = n;
+        }
+
+        void clear() {
+            size = 0;
+        }
+    }
+}
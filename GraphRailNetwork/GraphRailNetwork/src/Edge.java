@@ -1,3 +1,4 @@
+import java.util.ArrayList;
 
 /**
  * Class representing an edge of a graph
@@ -8,11 +9,9 @@
 public class Edge {
     private Vertex u, v; // need to store the two Vertices that make up our Edge (u and v)
     private String n; // need to store the name of our edge- for example "Victoria_Embankment"
-    private String label = null; // need to store the edge label so we can mark edges as visited or cross edges, etc
-    // label edges that have been visited as 'traversed', cross edges as 'crossedge' (note that
-    // by this convention un-visited edges are simply null
-    private final String TRVSD = "traversed";
-    private final String XEDGE = "crossedge";
+    private double travelTime = 1, distance = 1; // weights used by route searches; 1 unless given
+    private int uIndex = -1, vIndex = -1; // positions of this edge in the incidence sequences of u and v
+    private int position = -1; // position of this edge in its graph's edge list, or -1 if not in a graph
 
     /**
      * Construct a new edge with end vertices u and v and name n.
@@ -26,6 +25,22 @@ public class Edge {
         this.v = v;
         this.n = n;
     }
+
+    /**
+     * Construct a new edge with end vertices u and v, name n, and the time it takes to travel
+     * along it and its length. Neither weight may be negative.
+     *
+     * @param u          vertex
+     * @param v          vertex
+     * @param n          name
+     * @param travelTime travel time
+     * @param distance   distance
+     */
+    public Edge(Vertex u, Vertex v, String n, double travelTime, double distance) {
+        this(u, v, n);
+        setTravelTime(travelTime);
+        setDistance(distance);
+    }
     
     /**
      * Get endpoint vertex u.
@@ -64,69 +79,103 @@ public class Edge {
     }
     
     /**
-     * Get the position of the edge in the the incidence sequence associated with v. Returns -1
-     * if the edge is not incident to v.
-     * @param v - a vertex
-     * @return int
+     * Get the time it takes to travel along the edge.
+     *
+     * @return double
      */
-    public int getIndex(Vertex v) {
-        return v.getIncidentEdges().indexOf(this);
+    public double getTravelTime() {
+        return travelTime;
     }
-    
+
     /**
-     * Mark an edge as 'traversed'. This is used to keep track of edges visited
-     * during graph traversal.
+     * Set the time it takes to travel along the edge. Use Graph.retime for an edge in a graph,
+     * so that the graph's route searches see the change.
+     *
+     * @param t travel time, not negative
      */
-    protected void labelAsTraversed() {
-        label = TRVSD;
+    protected void setTravelTime(double t) {
+        if (!(t >= 0)) {
+            throw new IllegalArgumentException("travel time must not be negative: " + t);
+        }
+        travelTime = t;
     }
-    
+
     /**
-     * Mark an edge as a 'cross edge'. This is used to keep track of edges
-     * visited during graph traversal.
+     * Get the length of the edge.
+     *
+     * @return double
      */
-    protected void labelAsCrossEdge() {
-        label = XEDGE;
+    public double getDistance() {
+        return distance;
     }
-    
+
     /**
-     * Check whether an edge has been visited or not. Visited means that the edge
-     * has either been traversed or marked as a cross-edge. Used during graph 
-     * traversal.
-     * 
-     * @return true or false
+     * Set the length of the edge.
+     *
+     * @param d distance, not negative
      */
-    protected boolean isVisited() {
-        return label != null;
+    protected void setDistance(double d) {
+        if (!(d >= 0)) {
+            throw new IllegalArgumentException("distance must not be negative: " + d);
+        }
+        distance = d;
     }
-    
+
     /**
-     * Check whether an edge has been traversed. Used during graph traversal.
-     * 
-     * @return true or false
+     * Get the position of the edge in the the incidence sequence associated with v. Returns -1
+     * if the edge is not incident to v.
+     * @param v - a vertex
+     * @return int
      */
-    protected boolean isTraversed() {
-        return TRVSD.equals(label);
+    public int getIndex(Vertex v) {
+        int i = v == u ? uIndex : v == this.v ? vIndex : -1;
+        //Guard against a stale position, e.g. if the sequence was modified directly.
+        ArrayList<Edge> seq = v.getIncidentEdges();
+        return i >= 0 && i < seq.size() && seq.get(i) == this ? i : -1;
     }
-    
+
     /**
-     * Check whether an edge has been marked as a cross-edge. Used during graph
-     * traversal.
-     * 
-     * @ return true or false
+     * Record the position of the edge in the incidence sequence associated with w.
+     * @param w - an end vertex of the edge
+     * @param i - the position, or -1 if the edge has been removed from the sequence
      */
-    protected boolean isCrossEdge() {
-        return XEDGE.equals(label);
+    protected void setIndex(Vertex w, int i) {
+        if (w == u) {
+            uIndex = i;
+        } else if (w == v) {
+            vIndex = i;
+        }
     }
 
     /**
-     * 'Unvisit' an edge. Reset the edge label to 'unvisited'. Used before graph
-     * traversal to reset a graph.
+     * Get the position of the edge in its graph's edge list. Returns -1 if the edge is not in a
+     * graph.
+     *
+     * @return int
+     */
+    protected int getPosition() {
+        return position;
+    }
+
+    /**
+     * Set the position of the edge in its graph's edge list.
+     *
+     * @param i the position
      */
-    protected void unVisit() {
-        label = null;
+    protected void setPosition(int i) {
+        position = i;
     }
 
+    /**
+     * Check whether this is a view of an edge kept elsewhere, such as in an ArrayGraph or
+     * MappedGraph. Views cannot be put in a Graph.
+     *
+     * @return boolean
+     */
+    protected boolean isView() {
+        return false;
+    }
+    
     //Vertices need to be disconnected from an edge when its removed.
     public void removeVertices(){
         u = null;
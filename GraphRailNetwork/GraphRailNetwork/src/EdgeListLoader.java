@@ -0,0 +1,193 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Builds a graph from a list of edges in CSV or TSV form, one edge per line:
+ *
+ * <pre>
+ * from,to,name[,weight]
+ * </pre>
+ *
+ * from and to are station names, and a station is created the first time its name appears. The
+ * optional weight is the travel time of the edge. Blank lines and lines starting with # are
+ * skipped, as is a line of column headings "from", "to", "name" (in any case) before the first
+ * edge. Spaces around each field are ignored, so "Euston, Camden Town" joins Euston to Camden
+ * Town; this holds inside quotes too, so no name can start or end with a space. In CSV, a field
+ * may be put in double quotes to include the delimiter, with "" standing for a quote inside it.
+ *
+ * The lines are read one at a time and not kept, so memory use is only the graph being built and
+ * two hash maps, one from station names to vertices and one that makes every repeated edge name
+ * share a single String. The degree of each station is counted while reading, so the incidence
+ * sequences can be given the right size before the graph is put together in a single pass at the
+ * end. The graph takes over the loader's lists rather than copying them.
+ */
+public class EdgeListLoader {
+    private final char delimiter;
+    private final HashMap<String, Vertex> stations;
+    private final HashMap<String, String> names = new HashMap<>();
+    private final ArrayList<Vertex> vertices;
+    private final ArrayList<Edge> edges;
+    private int[] degrees;
+    private final ArrayList<String> fields = new ArrayList<>(4);
+    private final StringBuilder field = new StringBuilder();
+
+    /**
+     * Construct a loader.
+     *
+     * @param delimiter     the character between fields, usually ',' or '\t'
+     * @param expectedEdges roughly how many edges to expect, used to size the lists and maps up
+     *                      front; 0 if not known
+     */
+    public EdgeListLoader(char delimiter, int expectedEdges) {
+        if (delimiter == '"' || delimiter == '\n' || delimiter == '\r') {
+            throw new IllegalArgumentException("Cannot use " + delimiter + " as a delimiter");
+        }
+        this.delimiter = delimiter;
+        //Rail networks have somewhat more segments than stations.
+        int expectedVertices = Math.max(16, expectedEdges / 2);
+        stations = new HashMap<>(expectedVertices * 4 / 3 + 1);
+        vertices = new ArrayList<>(expectedVertices);
+        edges = new ArrayList<>(Math.max(16, expectedEdges));
+        degrees = new int[expectedVertices];
+    }
+
+    /**
+     * Read every edge from the given input and build a graph out of them. The input is read to
+     * the end but not closed. A loader can only be used once.
+     *
+     * @param in the edge list
+     * @return a new graph
+     * @throws IOException if the input cannot be read, or a line has too few fields or a weight
+     *                     that is not a number
+     */
+    public Graph load(Reader in) throws IOException {
+        BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in, 1 << 16);
+        String line;
+        int number = 0;
+        boolean first = true;
+        while ((line = lines.readLine()) != null) {
+            number++;
+            if (line.isEmpty() || line.charAt(0) == '#') {
+                continue;
+            }
+            split(line, number);
+            if (first) {
+                first = false;
+                if (isHeader()) {
+                    continue;
+                }
+            }
+            if (fields.size() < 3 || fields.size() > 4) {
+                throw new IOException("Line " + number + ": expected from, to, name and an optional weight, found "
+                        + fields.size() + " fields");
+            }
+            Vertex u = station(fields.get(0));
+            Vertex v = station(fields.get(1));
+            String name = intern(fields.get(2));
+            Edge edge;
+            if (fields.size() == 4) {
+                edge = new Edge(u, v, name, weight(fields.get(3), number), 1);
+            } else {
+                edge = new Edge(u, v, name);
+            }
+            edges.add(edge);
+            degrees[u.getIndex()]++;
+            if (u != v) {
+                degrees[v.getIndex()]++;
+            }
+        }
+
+        for (int i = 0; i < vertices.size(); i++) {
+            vertices.get(i).reserveIncidentEdges(degrees[i]);
+        }
+        return Graph.adopt(vertices, edges);
+    }
+
+    //Whether the fields just split are the column headings.
+    private boolean isHeader() {
+        return fields.size() >= 3 && fields.get(0).equalsIgnoreCase("from")
+                && fields.get(1).equalsIgnoreCase("to") && fields.get(2).equalsIgnoreCase("name");
+    }
+
+    //The vertex for a station name, creating it if the name is new.
+    private Vertex station(String name) {
+        Vertex vertex = stations.get(name);
+        if (vertex == null) {
+            vertex = new Vertex(name);
+            vertex.setIndex(vertices.size());
+            vertices.add(vertex);
+            stations.put(name, vertex);
+            if (vertices.size() > degrees.length) {
+                int[] grown = new int[degrees.length * 2];
+                System.arraycopy(degrees, 0, grown, 0, degrees.length);
+                degrees = grown;
+            }
+        }
+        return vertex;
+    }
+
+    //The first copy seen of an edge name, so that repeated names share one String.
+    private String intern(String name) {
+        String first = names.putIfAbsent(name, name);
+        return first == null ? name : first;
+    }
+
+    private static double weight(String text, int number) throws IOException {
+        try {
+            double weight = Double.parseDouble(text);
+            if (weight < 0 || Double.isNaN(weight)) {
+                throw new IOException("Line " + number + ": weight must be 0 or more: " + text);
+            }
+            return weight;
+        } catch (NumberFormatException e) {
+            throw new IOException("Line " + number + ": weight is not a number: " + text, e);
+        }
+    }
+
+    //Split a line into fields, handling double quotes, and trim the spaces around each one.
+    private void split(String line, int number) throws IOException {
+        fields.clear();
+        //Most lines have no quotes, and can be cut up without copying each character.
+        if (line.indexOf('"') < 0) {
+            int start = 0;
+            for (int end = line.indexOf(delimiter); end >= 0; end = line.indexOf(delimiter, start)) {
+                fields.add(line.substring(start, end).trim());
+                start = end + 1;
+            }
+            fields.add(line.substring(start).trim());
+            return;
+        }
+
+        field.setLength(0);
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else if (c == '"' && field.toString().isBlank()) {
+                //Spaces before the opening quote are not part of the field.
+                field.setLength(0);
+                quoted = true;
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            throw new IOException("Line " + number + ": quotes are not closed");
+        }
+        fields.add(field.toString().trim());
+    }
+}
@@ -1,4 +1,13 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Class Graph provides an implementation of the GraphADT interface class.
@@ -7,19 +16,123 @@ import java.util.ArrayList;
 public class Graph implements GraphADT {
     private final ArrayList<Vertex> verticesList;
     private final ArrayList<Edge> edgesList;
+    private final AdjacencyIndex adjacency; // pairs of vertices joined by an edge
+    private final NameIndex<Vertex> vertexNames; // vertices by name, which also interns the names
+    private final NameIndex<Edge> edgeNames;     // edges by name, which also interns the names
+    private final ConnectedComponents components = new ConnectedComponents(this);
+    private volatile CompactGraph compact; // CSR snapshot used by traversals, rebuilt after any change
+    private volatile long version; // counts insertions and removals of vertices and edges
+    private ContractionHierarchy hierarchy; // built on demand, for the version in hierarchyVersion
+    private long hierarchyVersion = -1;
+    private volatile int landmarkCount;           // landmarks to guide mostDirectRoute with, 0 if not wanted
+    private boolean planarLandmarks;              // choose the landmarks by planar rather than farthest-point selection
+    private volatile VersionedLandmarks landmarks; // built on demand, or null
+    private volatile RouteCache routeCache; // most direct routes found before, or null if not wanted
+
+    //Traversal state is kept apart from the vertices and edges, one set per thread, so that any
+    //number of threads can query the graph at once as long as none of them changes it.
+    private final ThreadLocal<SearchState> searchStates = ThreadLocal.withInitial(SearchState::new);
+    private final ThreadLocal<SearchState> backwardStates = ThreadLocal.withInitial(SearchState::new);
 
     /**
      * Constructs a new graph object. The constructor takes a collection of vertices and
      * a collection of edges and initialises the graph. In particular, it instantiates the incidence
-     * sequences associated with the vertices.
+     * sequences associated with the vertices. The graph keeps its own copies of the two lists,
+     * since vertices and edges record their positions in them. For the same reason they must be
+     * new: a vertex or edge can only be in one graph, and only once.
      *
      * @param vertices a list of vertices
-     * @param edges    a list of edges
+     * @param edges    a list of edges, all between vertices in the first list
+     * @throws IllegalArgumentException if any of them is a view of a vertex or edge of an
+     *                                  ArrayGraph or MappedGraph, is already in a graph or listed
+     *                                  twice, or if an edge has an end that is not listed
      */
     public Graph(ArrayList<Vertex> vertices, ArrayList<Edge> edges) {
-        // INSERT YOUR CODE HERE
+        this(new ArrayList<>(vertices), new ArrayList<>(edges), false);
+    }
+
+    //Build a graph around the given lists, which it takes over. If indexed, every vertex already
+    //records its position in the list and nothing is checked, as for lists a loader has prepared.
+    private Graph(ArrayList<Vertex> vertices, ArrayList<Edge> edges, boolean indexed) {
+        if (!indexed) {
+            for (Vertex vertex : vertices) {
+                requireReal(vertex);
+                requireFree(vertex);
+            }
+            for (Edge edge : edges) {
+                requireReal(edge);
+                requireFree(edge);
+            }
+        }
         edgesList = edges;
         verticesList = vertices;
+        adjacency = new AdjacencyIndex(edges.size());
+        vertexNames = new NameIndex<>(Vertex::getName, vertices.size());
+        edgeNames = new NameIndex<>(Edge::getName, edges.size());
+        if (!indexed) {
+            index();
+        }
+
+        for (Vertex vertex : verticesList) {
+            vertex.setName(vertexNames.add(vertex.getName(), vertex));
+        }
+        //Record every edge in the incidence sequences of its end vertices.
+        for (int i = 0; i < edgesList.size(); i++) {
+            Edge edge = edgesList.get(i);
+            edge.setPosition(i);
+            edge.setName(edgeNames.add(edge.getName(), edge));
+            attach(edge);
+        }
+    }
+
+    //Give every vertex its position in the list, checking the edges against them, before
+    //anything else is changed. If the lists are wrong, every position given is taken back.
+    private void index() {
+        try {
+            for (int i = 0; i < verticesList.size(); i++) {
+                Vertex vertex = verticesList.get(i);
+                if (vertex.getIndex() >= 0) {
+                    throw new IllegalArgumentException("Vertex " + vertex.getName() + " is listed twice");
+                }
+                vertex.setIndex(i);
+            }
+            for (int i = 0; i < edgesList.size(); i++) {
+                Edge edge = edgesList.get(i);
+                if (edge.getPosition() >= 0) {
+                    throw new IllegalArgumentException("Edge " + edge.getName() + " is listed twice");
+                }
+                if (!contains(edge.getVertex_u()) || !contains(edge.getVertex_v())) {
+                    throw new IllegalArgumentException("Edge " + edge.getName() + " has an end that is not in the list of vertices");
+                }
+                edge.setPosition(i);
+            }
+        } catch (IllegalArgumentException e) {
+            for (Vertex vertex : verticesList) {
+                if (contains(vertex)) {
+                    vertex.setIndex(-1);
+                }
+            }
+            for (Edge edge : edgesList) {
+                if (contains(edge)) {
+                    edge.setPosition(-1);
+                }
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Build a graph around lists prepared by a loader, taking them over instead of copying them.
+     * Every vertex must be new and already record its position in the list, ideally with room
+     * reserved for its incident edges, and every edge must be new and join vertices in the list.
+     * None of this is checked.
+     *
+     * @param vertices a list of vertices, which the graph keeps
+     * @param edges    a list of edges, which the graph keeps
+     * @return a new graph
+     */
+    static Graph adopt(ArrayList<Vertex> vertices, ArrayList<Edge> edges) {
+        return new Graph(vertices, edges, true);
     }
 
     /**
@@ -31,6 +144,52 @@ public class Graph implements GraphADT {
     public Graph() {
         edgesList = new ArrayList<Edge>();
         verticesList = new ArrayList<Vertex>();
+        adjacency = new AdjacencyIndex();
+        vertexNames = new NameIndex<>(Vertex::getName, 16);
+        edgeNames = new NameIndex<>(Edge::getName, 16);
+    }
+
+    /**
+     * Load a graph saved with save. This is much faster than inserting the vertices and edges one
+     * at a time; see GraphSnapshot for the file format.
+     *
+     * @param file the file to read
+     * @return a new graph
+     * @throws IOException if the file cannot be read, or is not a graph snapshot
+     */
+    public static Graph load(Path file) throws IOException {
+        return GraphSnapshot.read(file);
+    }
+
+    /**
+     * Build a graph from a CSV or TSV file of edges in UTF-8, one "from,to,name[,weight]" per
+     * line; see EdgeListLoader. Files whose names end in .tsv or .tab are split at tabs, and
+     * all others at commas. The lists are sized from the length of the file before reading.
+     *
+     * @param file the file to read
+     * @return a new graph
+     * @throws IOException if the file cannot be read or a line cannot be understood
+     */
+    public static Graph loadEdgeList(Path file) throws IOException {
+        String fileName = file.getFileName().toString().toLowerCase();
+        char delimiter = fileName.endsWith(".tsv") || fileName.endsWith(".tab") ? '\t' : ',';
+        //Guess at around 32 bytes a line.
+        long expected = Math.min(Integer.MAX_VALUE - 8, Files.size(file) / 32);
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            return new EdgeListLoader(delimiter, (int) expected).load(in);
+        }
+    }
+
+    /**
+     * Save the graph to a binary file, which is created or overwritten, so that it can be loaded
+     * again quickly with load. The vertices and edges keep their order, names, locations and
+     * weights.
+     *
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(Path file) throws IOException {
+        GraphSnapshot.write(this, file);
     }
 
     /**
@@ -41,29 +200,64 @@ public class Graph implements GraphADT {
      */
     public Vertex insertVertex(String n) {
         Vertex newVertex = new Vertex(n);
+        newVertex.setName(vertexNames.add(n, newVertex));
+        newVertex.setIndex(verticesList.size());
         verticesList.add(newVertex);
+        components.vertexInserted();
+        compact = null;
+        version++;
 
         return newVertex;
     }
 
     /**
-     * Remove the given vertex from the graph. The name of the removed vertex is returned, or
-     * null if the graph does not contain the vertex.
+     * Insert a vertex with name n at the given geographic location into the graph.
+     *
+     * @param n   String
+     * @param lat latitude in degrees
+     * @param lon longitude in degrees
+     * @return v Vertex that was added
+     */
+    public Vertex insertVertex(String n, double lat, double lon) {
+        Vertex newVertex = insertVertex(n);
+        newVertex.setLocation(lat, lon);
+
+        return newVertex;
+    }
+
+    /**
+     * Remove the given vertex from the graph, together with every edge incident to it. The name
+     * of the removed vertex is returned, or null if the graph does not contain the vertex.
      *
      * @param v Vertex
      * @return n String representing the name of the removed Vertex
      */
     public String removeVertex(Vertex v) {
-        String name = null;
+        if (!contains(v)) {
+            return null;
+        }
 
-        for (int i = 0; i < verticesList.size(); i++) {
-            if (verticesList.get(i) == v) {
-                name = verticesList.get(i).getName();
-                verticesList.remove(i);
-            }
+        //Take the incident edges out first so that no edge is left pointing at a missing vertex.
+        //Each removal takes the last edge of the sequence, so nothing is moved.
+        ArrayList<Edge> incident = v.getIncidentEdges();
+        while (!incident.isEmpty()) {
+            removeEdge(incident.get(incident.size() - 1));
+        }
+
+        //Move the last vertex into the gap so that removal is O(1).
+        int i = v.getIndex();
+        Vertex last = verticesList.remove(verticesList.size() - 1);
+        if (last != v) {
+            verticesList.set(i, last);
+            last.setIndex(i);
         }
+        v.setIndex(-1);
+        vertexNames.remove(v.getName(), v);
+        components.removed();
+        compact = null;
+        version++;
 
-        return name;
+        return v.getName();
     }
 
     /**
@@ -75,12 +269,27 @@ public class Graph implements GraphADT {
      * @param v Vertex
      * @param n the name of the Edge
      * @return e the Edge that was inserted into the Graph
+     * @throws IllegalArgumentException if u or v is a view of another graph's vertex
      */
     public Edge insertEdge(Vertex u, Vertex v, String n) {
-        Edge newEdge = new Edge(u, v, n);
-        edgesList.add(newEdge);
+        return add(new Edge(u, v, n));
+    }
 
-        return newEdge;
+    /**
+     * Build a new edge with end vertices u and v, name n, and the given travel time and
+     * distance, and insert into the graph. The vertices u and v must already be in the graph.
+     *
+     * @param u          Vertex
+     * @param v          Vertex
+     * @param n          the name of the Edge
+     * @param travelTime the time it takes to travel along the Edge, not negative
+     * @param distance   the length of the Edge, not negative
+     * @return e the Edge that was inserted into the Graph
+     * @throws IllegalArgumentException if u or v is a view of another graph's vertex, or
+     *                                  travelTime or distance is negative
+     */
+    public Edge insertEdge(Vertex u, Vertex v, String n, double travelTime, double distance) {
+        return add(new Edge(u, v, n, travelTime, distance));
     }
 
     /**
@@ -91,17 +300,27 @@ public class Graph implements GraphADT {
      * @return String name of the edge that was removed
      */
     public String removeEdge(Edge e) {
-        String name = null;
-        for (int i = 0; i < edgesList.size(); i++) {
-            if (edgesList.get(i) == e) {
-                name = edgesList.get(i).getName();
-                edgesList.remove(i);
-                //New method removeVertices in Edge.java.
-                e.removeVertices();
-            }
+        if (!contains(e)) {
+            return null;
+        }
+        detach(e);
+
+        //Move the last edge into the gap so that removal is O(1).
+        int i = e.getPosition();
+        Edge last = edgesList.remove(edgesList.size() - 1);
+        if (last != e) {
+            edgesList.set(i, last);
+            last.setPosition(i);
         }
+        e.setPosition(-1);
+        edgeNames.remove(e.getName(), e);
+        //New method removeVertices in Edge.java.
+        e.removeVertices();
+        components.removed();
+        compact = null;
+        version++;
 
-        return name;
+        return e.getName();
     }
 
     /**
@@ -143,147 +362,300 @@ public class Graph implements GraphADT {
     }
 
     /**
-     * Checks whether two vertices are adjacent (i.e. joined by a single edge) or not.
+     * Checks whether two vertices are adjacent (i.e. joined by a single edge) or not. Edges are
+     * undirected, so the order of v and w does not matter. This is an O(1) lookup in the
+     * adjacency index, which is kept up to date as edges are inserted and removed.
      *
      * @param v a vertex
      * @param w a vertex
      * @return boolean, true if v and w are adjacent, false otherwise
      */
     public boolean areAdjacent(Vertex v, Vertex w) {
-        boolean adjacent = false;
-
-        //Loop through edges until vertex v is found. Then check if vertex w shares the same edge
-        for (Edge edge : edgesList) {
-            if (edge.getVertex_u() == v) {
-                if (edge.getVertex_v() == w) {
-                    adjacent = true;
-                }
-            }
+        if (v == null || w == null) {
+            return false;
         }
 
-        return adjacent;
+        return adjacency.contains(v.getKey(), w.getKey());
     }
 
     /**
-     * Finds and returns the set of edges that are incident to a given vertex.
+     * Finds and returns the set of edges that are incident to a given vertex. The incidence
+     * sequence is kept up to date as edges are inserted and removed, so this is the vertex's
+     * own list rather than a copy and should not be modified by the caller.
      *
      * @param v the vertex
      * @return ArrayList<Edge> a list of all edges incident on the given vertex
      */
     public ArrayList<Edge> incidentEdges(Vertex v) {
-
-        //Loop through edges. If the edge has v as a vertex, then add it as new incident edge
-        for (Edge edge : edgesList) {
-            if (edge.getVertex_u() == v || edge.getVertex_v() == v) {
-                v.addIncidentEdge(edge);
-            }
-        }
-
         return v.getIncidentEdges();
     }
 
     /**
-     * Rename vertex v as n
+     * Rename vertex v as n, and move it to its new name in the name index.
      *
      * @param v a vertex
      * @param n the new name
      * @return String name of Vertex that was over-written
      */
     public String rename(Vertex v, String n) {
+        String old = v.getName();
+        if (contains(v)) {
+            vertexNames.remove(old, v);
+            n = vertexNames.add(n, v);
+        }
         v.setName(n);
 
-        return v.getName();
+        return old;
     }
 
     /**
-     * Rename edge e as n
+     * Rename edge e as n, and move it to its new name in the name index.
      *
      * @param e an edge
      * @param n the new name
      * @return String name of Edge that was over-written
      */
     public String rename(Edge e, String n) {
+        String old = e.getName();
+        if (contains(e)) {
+            edgeNames.remove(old, e);
+            n = edgeNames.add(n, e);
+        }
         e.setName(n);
 
-        return e.getName();
+        return old;
     }
 
-    //Used in bfTraverse.
-    private ArrayList<Vertex> visitedVertices = new ArrayList<>();
-    private boolean recursion = false;
-    private Vertex newStart;
+    /**
+     * Find a station by name in O(1) expected time. Names are looked up in an index that
+     * insertVertex, removeVertex and rename keep up to date, so a vertex renamed by calling
+     * setName on it directly is not found under its new name.
+     *
+     * @param name a name
+     * @return a vertex with that name, the one inserted first if there are several; or null
+     */
+    public Vertex findVertex(String name) {
+        return vertexNames.first(name);
+    }
 
     /**
-     * Perform a breadth-first search traversal of the graph (i.e, of the entire rail network).
-     * This will work with either connected or unconnected graphs. It works by iterating through
-     * the graph vertices and carrying out a breadth-first traversal for each unvisited vertex.
+     * Find every station with the given name.
      *
-     * @return a list of Vertices in order visited (so v will always be at index 0)
+     * @param name a name
+     * @return a list of the vertices with that name, in the order they were inserted
      */
-    public ArrayList<Vertex> bfTraverse() {
-        //Checks for empty graph.
-        if(verticesList.size() == 0){
-            return visitedVertices;
+    public ArrayList<Vertex> findVertices(String name) {
+        return vertexNames.all(name);
+    }
+
+    /**
+     * Find a segment by name in O(1) expected time. Names are looked up in an index that
+     * insertEdge, removeEdge and rename keep up to date, so an edge renamed by calling setName
+     * on it directly is not found under its new name.
+     *
+     * @param name a name
+     * @return an edge with that name, the one inserted first if there are several; or null
+     */
+    public Edge findEdge(String name) {
+        return edgeNames.first(name);
+    }
+
+    /**
+     * Find every segment with the given name, such as all of the segments of a line.
+     *
+     * @param name a name
+     * @return a list of the edges with that name, in the order they were inserted
+     */
+    public ArrayList<Edge> findEdges(String name) {
+        return edgeNames.all(name);
+    }
+
+    /**
+     * Set the geographic location of vertex v.
+     *
+     * @param v   a vertex
+     * @param lat latitude in degrees
+     * @param lon longitude in degrees
+     */
+    public void locate(Vertex v, double lat, double lon) {
+        v.setLocation(lat, lon);
+        compact = null;
+    }
+
+    /**
+     * Change the travel time of edge e to t.
+     *
+     * @param e an edge
+     * @param t the new travel time, not negative
+     * @return double the old travel time
+     */
+    public double retime(Edge e, double t) {
+        double old = e.getTravelTime();
+        e.setTravelTime(t);
+        compact = null;
+
+        return old;
+    }
+
+    /**
+     * Return the CSR snapshot of the graph, building it first if the graph has changed since
+     * the last snapshot was taken. If two threads find no snapshot at the same time, both build
+     * one; they are identical, so it does not matter whose is kept.
+     *
+     * @return CompactGraph
+     */
+    public CompactGraph compact() {
+        CompactGraph g = compact;
+        if (g == null) {
+            g = new CompactGraph(this);
+            compact = g;
         }
-        ArrayList<Edge> incidenceEdgeCollection = new ArrayList<>();
-        Vertex current;
-
-        //Recursion is false means this is the first bfTraverse, so start from beginning.
-        //Recursion is true means this is not first bfTraverse, start from a different point.
-        if(!recursion){
-            visitedVertices.clear();
-            current = verticesList.get(0);
-        }else{
-            current = newStart;
-        }
-
-        //Add current vertex to visitedVertices.
-        visitedVertices.add(current);
-
-        //Start loop at visitedVertices.size() - 1. This prevents array index out of
-        // bounds errors caused by unconnected components.
-        for (int i = visitedVertices.size() - 1; i < verticesList.size(); i++) {
-            //If visitedVertices is less than or equal to i, then there are unconnected vertices.
-            if(visitedVertices.size() <= i){
-                //To get to the unconnected vertices, find them in verticesList and run bfTraverse again.
-                for (Vertex vertex : verticesList) {
-                    if (!vertex.isVisited()) {
-                        recursion = true;
-                        newStart = vertex;
-                        bfTraverse();
-                    }
-                }
-            }
-            current = visitedVertices.get(i);
-            current.labelAsVisited();
-            incidenceEdgeCollection.addAll(incidentEdges(current));
+        return g;
+    }
+
+    /**
+     * Return a contraction hierarchy for the graph, for fast most direct route queries. Building
+     * one takes much longer than a single breadth-first search, so it is kept and reused until
+     * a vertex or edge is inserted or removed, and only then built again. Renaming, retiming and
+     * relocating do not affect the hierarchy.
+     *
+     * @return ContractionHierarchy
+     */
+    public synchronized ContractionHierarchy contractionHierarchy() {
+        long current = version;
+        if (hierarchy == null || hierarchyVersion != current) {
+            hierarchy = new ContractionHierarchy(compact());
+            hierarchyVersion = current;
+        }
+        return hierarchy;
+    }
 
+    /**
+     * Make mostDirectRoute search with the help of k landmarks chosen by farthest-point
+     * selection, or go back to the plain bidirectional breadth-first search if k is 0.
+     * See useLandmarks(int, boolean).
+     *
+     * @param k the number of landmarks
+     */
+    public void useLandmarks(int k) {
+        useLandmarks(k, false);
+    }
 
-            for (Edge edge : incidenceEdgeCollection) {
-                //Only visit unvisited vertices.
-                if (!edge.getVertex_v().isVisited()) {
-                    visitedVertices.add(edge.getVertex_v());
-                    edge.getVertex_v().labelAsVisited();
-                }
-                if (!edge.getVertex_u().isVisited()) {
-                    visitedVertices.add(edge.getVertex_u());
-                    edge.getVertex_u().labelAsVisited();
-                }
+    /**
+     * Make mostDirectRoute search with the help of k landmarks, or go back to the plain
+     * bidirectional breadth-first search if k is 0. With landmarks, mostDirectRoute runs an A*
+     * search guided by the lower bounds the landmarks give (see Landmarks), which usually
+     * settles far fewer vertices on large networks. The hops from each landmark to every vertex
+     * are worked out the first time they are needed, and again whenever a vertex or edge has
+     * been inserted or removed since; around 8 to 16 landmarks is usually enough.
+     *
+     * @param k      the number of landmarks
+     * @param planar true to choose the landmarks by their location, false to choose them by
+     *               farthest-point selection
+     */
+    public synchronized void useLandmarks(int k, boolean planar) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of landmarks cannot be negative: " + k);
+        }
+        if (k != landmarkCount || planar != planarLandmarks) {
+            landmarkCount = k;
+            planarLandmarks = planar;
+            landmarks = null;
+        }
+    }
+
+    /**
+     * Return the landmarks used by mostDirectRoute, building them first if the graph has changed
+     * since they were last built; or null if landmarks are not in use. Only building takes a
+     * lock, so queries on an unchanged graph do not hold each other up.
+     *
+     * @return Landmarks
+     */
+    public Landmarks landmarks() {
+        if (landmarkCount == 0) {
+            return null;
+        }
+        VersionedLandmarks built = landmarks;
+        if (built != null && built.version == version) {
+            return built.landmarks;
+        }
+        synchronized (this) {
+            if (landmarkCount == 0) {
+                return null;
             }
-            //Clear out incidence edges after each itteration.
-            incidenceEdgeCollection.removeAll(incidentEdges(current));
+            long current = version;
+            built = landmarks;
+            if (built == null || built.version != current) {
+                built = new VersionedLandmarks(new Landmarks(compact(), landmarkCount, planarLandmarks), current);
+                landmarks = built;
+            }
+            return built.landmarks;
         }
+    }
 
-        //If the first check doesn't catch unconnected components, then this will.
-        for (Vertex vertex : verticesList) {
-            if (!vertex.isVisited()) {
-                recursion = true;
-                newStart = vertex;
-                bfTraverse();
+    /**
+     * Make mostDirectRoute keep up to capacity of the routes it finds in a least recently used
+     * cache, and return them again without searching while the graph has not changed; or turn
+     * the cache off if capacity is 0. Turning the cache on again starts with an empty cache.
+     *
+     * @param capacity the largest number of routes to keep
+     */
+    public void useRouteCache(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative: " + capacity);
+        }
+        routeCache = capacity == 0 ? null : new RouteCache(capacity);
+    }
+
+    /**
+     * Get the cache used by mostDirectRoute, to see how well it is working, or null if the
+     * cache is turned off.
+     *
+     * @return RouteCache
+     */
+    public RouteCache routeCache() {
+        return routeCache;
+    }
+
+    /**
+     * Perform a breadth-first search traversal of the graph (i.e, of the entire rail network).
+     * This will work with either connected or unconnected graphs. It works by iterating through
+     * the graph vertices and carrying out a breadth-first traversal for each unvisited vertex.
+     *
+     * @return a list of Vertices in order visited (so v will always be at index 0)
+     */
+    public ArrayList<Vertex> bfTraverse() {
+        return bfForest().vertices();
+    }
+
+    /**
+     * Perform a breadth-first search traversal of the entire graph, as bfTraverse() does, and
+     * also report where each connected component begins and ends in the visiting order.
+     * Components are found in the order of their first vertex in vertices(). The traversal is
+     * a single iterative pass, so it cannot overflow the stack however many components there are.
+     *
+     * @return the vertices in order visited, split into connected components
+     */
+    public Traversal bfForest() {
+        CompactGraph g = compact();
+        SearchState state = searchStates.get();
+        state.begin(g.vertexCount());
+        int[] starts = new int[g.vertexCount() + 1];
+        int components = 0;
+        int count = 0;
+
+        //Start a new traversal from every vertex not reached by an earlier one. Vertices are
+        //only ever added to the end of the queue, so each traversal carries on where the last
+        //one finished and the queue ends up holding the whole visiting order.
+        for (int i = 0; i < g.vertexCount(); i++) {
+            if (!state.isReached(i)) {
+                starts[components++] = count;
+                count = breadthFirst(g, state, i, count);
             }
         }
+        starts[components] = count;
 
-        return visitedVertices;
+        return new Traversal(g, Arrays.copyOf(state.queue(), count), Arrays.copyOf(starts, components + 1));
     }
 
 
@@ -295,46 +667,26 @@ public class Graph implements GraphADT {
      * @return a list of Vertices in order visited (so v will always be at index 0)
      */
     public ArrayList<Vertex> bfTraverse(Vertex v) {
-        //Almost the same as other bfTraverse with some changes
-        ArrayList<Edge> incidenceEdgeCollection = new ArrayList<>();
-        visitedVertices.clear();
-
-
-        //Start at vertex v
-        Vertex current = v;
-        visitedVertices.add(current);
-
-        for (int i = 0; i < verticesList.size(); i++) {
-            //If visitedVertices size is less than or equal to i then the graph is not connected
-            //so return the vertices that can be reached.
-            if(visitedVertices.size() <= i){
-                return visitedVertices;
-            }
-
-            current = visitedVertices.get(i);
-            current.labelAsVisited();
-            incidenceEdgeCollection.addAll(incidentEdges(current));
-
+        CompactGraph g = compact();
+        int start = g.indexOf(v);
 
-            for (Edge edge : incidenceEdgeCollection) {
-                if (edge.getVertex_v() != null && !edge.getVertex_v().isVisited()) {
-                    visitedVertices.add(edge.getVertex_v());
-                    edge.getVertex_v().labelAsVisited();
-                }
-                if (edge.getVertex_v() != null && !edge.getVertex_u().isVisited()) {
-                    visitedVertices.add(edge.getVertex_u());
-                    edge.getVertex_u().labelAsVisited();
-                }
-            }
-            incidenceEdgeCollection.removeAll(incidentEdges(current));
+        //A vertex outside the graph can only reach itself.
+        if (start < 0) {
+            ArrayList<Vertex> visitedVertices = new ArrayList<>();
+            visitedVertices.add(v);
+            return visitedVertices;
         }
 
-        return visitedVertices;
+        SearchState state = searchStates.get();
+        state.begin(g.vertexCount());
+        int count = breadthFirst(g, state, start, 0);
+
+        return g.toVertices(state.queue(), count);
     }
 
     /**
      * Return a list of all of the vertices reachable from the given 'start' vertex. This works
-     * by simply performing a breadth-first search of the graph to label vertices. Any 'visited'
+     * by simply performing a breadth-first search of the graph to mark vertices. Any 'visited'
      * vertices have by definition been reached and are returned in a list.
      * (In other words,  return a list of all of the stations that can be reached
      * by rail when starting from v.
@@ -343,12 +695,74 @@ public class Graph implements GraphADT {
      * @return a list of vertices that have been reached
      */
     public ArrayList<Vertex> allReachable(Vertex v) {
-        //Unvisit every vertex before running bfTraverse to avoid incorrect results
-        for (Vertex vertex : verticesList) {
-            vertex.unVisit();
+        return bfTraverse(v);
+    }
+
+    /**
+     * Perform a breadth-first search traversal of the connected component that starts at v,
+     * searching each level in parallel on the given pool. Graphs with fewer than
+     * ParallelBreadthFirstSearch.DEFAULT_THRESHOLD vertices are searched sequentially. The
+     * vertices come level by level, as from bfTraverse(v), with v at index 0, but vertices the
+     * same number of hops from v may come in any order.
+     *
+     * @param v    a vertex to start from
+     * @param pool the pool to run the search on
+     * @return a list of Vertices in order visited
+     */
+    public ArrayList<Vertex> bfTraverse(Vertex v, ForkJoinPool pool) {
+        CompactGraph g = compact();
+        int start = g.indexOf(v);
+
+        //A vertex outside the graph can only reach itself.
+        if (start < 0) {
+            ArrayList<Vertex> reached = new ArrayList<>();
+            reached.add(v);
+            return reached;
         }
 
-        return bfTraverse(v);
+        int[] reached = new ParallelBreadthFirstSearch(g, pool).reachable(start);
+        return g.toVertices(reached, reached.length);
+    }
+
+    /**
+     * Return a list of all of the vertices reachable from the given 'start' vertex, searching
+     * each level of the breadth-first search in parallel on the given pool, as
+     * bfTraverse(v, pool) does. The same vertices are returned as by allReachable(v), nearer ones
+     * first, but vertices the same number of hops from v may come in any order.
+     *
+     * @param v    Vertex
+     * @param pool the pool to run the search on
+     * @return a list of vertices that have been reached
+     */
+    public ArrayList<Vertex> allReachable(Vertex v, ForkJoinPool pool) {
+        return bfTraverse(v, pool);
+    }
+
+    /**
+     * Work out the number of hops on a most direct route between every pair of vertices, with
+     * one breadth-first search per vertex run in parallel on the given pool. This is much
+     * quicker than calling mostDirectRoute for every pair. The matrix takes |V|^2 entries of one
+     * byte each on most rail networks; see HopMatrix.
+     *
+     * @param pool the pool to run the searches on
+     * @return the hops between every pair of vertices
+     */
+    public HopMatrix hopMatrix(ForkJoinPool pool) {
+        return new HopMatrix(compact(), pool);
+    }
+
+    /**
+     * Work out the number of hops on a most direct route between every pair of vertices, as
+     * hopMatrix(pool) does, but keep the matrix in a memory-mapped file instead of on the heap.
+     * This is worth doing once the matrix would take up a large part of the heap.
+     *
+     * @param pool the pool to run the searches on
+     * @param file the file to keep the matrix in, which is created or overwritten
+     * @return the hops between every pair of vertices
+     * @throws IOException if the file cannot be written
+     */
+    public HopMatrix hopMatrix(ForkJoinPool pool, Path file) throws IOException {
+        return new HopMatrix(compact(), pool, file);
     }
 
     /**
@@ -360,17 +774,51 @@ public class Graph implements GraphADT {
      * @return true if the graph is connected; false otherwise.
      */
     public boolean allConnected() {
-        //Graph with only 1 vertex is connected.
-        if(verticesList.size() <= 1){
-            return true;
-        }
+        //An empty graph has no components, and a connected one has exactly one.
+        return components.componentCount() <= 1;
+    }
 
-        //Unvisit every vertex before running bfTraverse to avoid incorrect results
-        for (Vertex vertex : verticesList) {
-            vertex.unVisit();
-        }
+    /**
+     * Check whether two vertices are in the same connected component, i.e. whether there is a
+     * route between them. This does not need a traversal; see ConnectedComponents.
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @return true if u and v are both in the graph and connected; false otherwise
+     */
+    public boolean sameComponent(Vertex u, Vertex v) {
+        return contains(u) && contains(v) && components.sameComponent(u.getIndex(), v.getIndex());
+    }
 
-        return bfTraverse(verticesList.get(0)).size() >= verticesList.size();
+    /**
+     * Get a number identifying the connected component that contains v. Vertices have the same
+     * number if and only if they are in the same component. The numbers may change whenever the
+     * graph changes.
+     *
+     * @param v a vertex
+     * @return the component number, or -1 if v is not in the graph
+     */
+    public int componentOf(Vertex v) {
+        return contains(v) ? components.componentOf(v.getIndex()) : -1;
+    }
+
+    /**
+     * Get the number of vertices in the connected component that contains v.
+     *
+     * @param v a vertex
+     * @return the size of the component, or 0 if v is not in the graph
+     */
+    public int componentSize(Vertex v) {
+        return contains(v) ? components.componentSize(v.getIndex()) : 0;
+    }
+
+    /**
+     * Get the number of connected components in the graph.
+     *
+     * @return int
+     */
+    public int componentCount() {
+        return components.componentCount();
     }
 
     /**
@@ -379,118 +827,475 @@ public class Graph implements GraphADT {
      * stations between them; or return null to indicate that the two stations cannot
      * be reached from one another.
      * The path itself is represented as an ArrayList of Edge objects.
+     * The search runs from both ends at once, a level at a time, always expanding whichever side
+     * has the smaller frontier, and stops once the two sides meet. Where there are several most
+     * direct routes, any one of them may be returned.
+     * If landmarks have been turned on with useLandmarks, an A* search guided by them is used
+     * instead, which finds a route of the same length. If the route cache has been turned on
+     * with useRouteCache, a route found before is returned from the cache as long as no vertex
+     * or edge has been inserted or removed since.
      *
      * @param u start vertex
      * @param v end vertex
      * @return an ArrayList of edges
      */
     public ArrayList<Edge> mostDirectRoute(Vertex u, Vertex v) {
-        //Unvisit all vertices before running
-        for (Vertex vertex : verticesList) {
-            vertex.unVisit();
+        //A vertex that is not in the graph, or null, has no route, with or without the cache.
+        RouteCache cache = routeCache;
+        if (cache == null || !contains(u) || !contains(v)) {
+            return searchMostDirectRoute(u, v);
         }
 
-        //bfs arrays
-        ArrayList<Edge> incidenceEdgeCollection = new ArrayList<>();
-        ArrayList<Vertex> visitedVertices = new ArrayList<>();
-        //arrays used to get path
-        ArrayList<TableRow> routeTable = new ArrayList<>();
-        ArrayList<Edge> intermediary = new ArrayList<>();
-        ArrayList<Edge> path = new ArrayList<>();
+        //Read the version before searching, so that a change made during the search leaves the
+        //route stored under an old version, where it will be ignored.
+        long current = version;
+        ArrayList<Edge> path = cache.get(current, u, v);
+        if (path == null) {
+            path = searchMostDirectRoute(u, v);
+            if (path != null) {
+                cache.put(current, u, v, path);
+            }
+        }
+
+        return path;
+    }
+
+    /**
+     * Find the most direct routes from v to every station, with a single breadth-first search.
+     * The route to any station can then be read off the tree in time proportional to its
+     * length, which is much quicker than calling mostDirectRoute once per destination.
+     *
+     * @param v start vertex
+     * @return the tree of routes from v, or null if v is not in the graph
+     */
+    public ShortestPathTree shortestPathTree(Vertex v) {
+        CompactGraph g = compact();
+        int source = g.indexOf(v);
+        return source < 0 ? null : new ShortestPathTree(g, source);
+    }
+
+    /**
+     * Find up to k alternative routes between u and v that do not visit any station twice, in
+     * order of the number of edges in them, using Yen's algorithm (see KShortestRoutes). The
+     * first route is a most direct route. Fewer than k routes are returned if there are no more.
+     *
+     * @param u start vertex
+     * @param v end vertex
+     * @param k the largest number of routes to return
+     * @return a list of routes, each an ArrayList of edges; empty if v cannot be reached from u
+     */
+    public List<ArrayList<Edge>> kShortestRoutes(Vertex u, Vertex v, int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of routes cannot be negative: " + k);
+        }
+        CompactGraph g = compact();
+        int source = g.indexOf(u);
+        int target = g.indexOf(v);
+        if (source < 0 || target < 0 || !components.sameComponent(source, target)) {
+            return new ArrayList<>();
+        }
 
-        //Returns null if the graph is empty.
-        if(verticesList.size() == 0){
+        return new KShortestRoutes(g, searchStates.get()).find(source, target, k);
+    }
+
+    /**
+     * Use Dijkstra's algorithm to find the fastest route between u and v, i.e. the path with
+     * the least total travel time; or return null if the two stations cannot be reached from
+     * one another. Edges inserted without a travel time count as 1, so on such a graph this is
+     * also a most direct route. The search stops as soon as v is settled.
+     *
+     * @param u start vertex
+     * @param v end vertex
+     * @return an ArrayList of edges
+     */
+    public ArrayList<Edge> fastestRoute(Vertex u, Vertex v) {
+        CompactGraph g = compact();
+        int source = g.indexOf(u);
+        int target = g.indexOf(v);
+        if (source < 0 || target < 0 || !components.sameComponent(source, target)) {
             return null;
         }
-        //If the target vertex is not in the graph, return null;
-        if(!verticesList.contains(v)){
+
+        SearchState state = searchStates.get();
+        state.begin(g.vertexCount());
+        IndexedMinHeap heap = state.heap();
+        state.reach(source, -1, -1);
+        state.setCost(source, 0);
+        heap.push(source, 0);
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            if (current == target) {
+                break;
+            }
+            for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                int next = g.target(arc);
+                double cost = state.cost(current) + g.travelTime(g.edgeId(arc));
+                //A vertex that is reached but no longer in the heap is settled and cannot improve.
+                if (!state.isReached(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    state.setCost(next, cost);
+                    heap.push(next, cost);
+                } else if (cost < state.cost(next) && heap.contains(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    state.setCost(next, cost);
+                    heap.decrease(next, cost);
+                }
+            }
+        }
+
+        return route(g, state, target);
+    }
+
+    /**
+     * Use A* search to find the shortest route between u and v by distance; or return null if
+     * the two stations cannot be reached from one another. The great-circle distance to v is
+     * used as a lower bound on the distance still to go, so the search heads towards v instead
+     * of spreading out in every direction. For the route to be the shortest, the distance of
+     * every edge must be in kilometres and no less than the great-circle distance between its
+     * end vertices. Vertices with no known location get a bound of 0, and if none have a
+     * location the search is the same as Dijkstra's algorithm.
+     *
+     * @param u start vertex
+     * @param v end vertex
+     * @return an ArrayList of edges
+     */
+    public ArrayList<Edge> shortestRoute(Vertex u, Vertex v) {
+        CompactGraph g = compact();
+        int source = g.indexOf(u);
+        int target = g.indexOf(v);
+        if (source < 0 || target < 0 || !components.sameComponent(source, target)) {
             return null;
         }
 
-        //Initialize a table which will contain all vertices
-        //See TableRow class.
-        for (Vertex vertex : verticesList) {
-            routeTable.add(new TableRow(vertex, null, null));
+        SearchState state = searchStates.get();
+        distanceSearch(g, state, source, target, true);
+
+        return route(g, state, target);
+    }
+
+    /**
+     * Find the shortest route between u and v by distance with A*, as shortestRoute does, then
+     * repeat the search with plain Dijkstra and with breadth-first search, and report how many
+     * vertices each one settled before reaching v.
+     *
+     * @param u start vertex
+     * @param v end vertex
+     * @return the route and the number of vertices settled by each search
+     */
+    public RouteComparison compareRoutes(Vertex u, Vertex v) {
+        CompactGraph g = compact();
+        int source = g.indexOf(u);
+        int target = g.indexOf(v);
+        if (source < 0 || target < 0 || !components.sameComponent(source, target)) {
+            return new RouteComparison(null, 0, 0, 0);
         }
 
-        //Start bfs at vertex u
-        Vertex current = u;
-        visitedVertices.add(current);
+        SearchState state = searchStates.get();
+        int dijkstra = distanceSearch(g, state, source, target, false);
+        int breadthFirst = breadthFirstSettled(g, state, source, target);
+        int aStar = distanceSearch(g, state, source, target, true);
 
-        for (int i = 0; i < verticesList.size(); i++) {
-            //Visited vertices < i would mean there are components that cannot be reached.
-            if (visitedVertices.size() > i) {
-                current = visitedVertices.get(i);
-                current.labelAsVisited();
-                incidenceEdgeCollection.addAll(incidentEdges(current));
+        return new RouteComparison(route(g, state, target), aStar, dijkstra, breadthFirst);
+    }
 
-                for (Edge edge : incidenceEdgeCollection) {
-                    if (!edge.getVertex_v().isVisited()) {
-                        visitedVertices.add(edge.getVertex_v());
-                        edge.getVertex_v().labelAsVisited();
+    /*
+    / INSERT ALL PRIVATE METHODS USED BELOW THIS POINT
+    / You are welcome to use as many private methods as necessary, but do not edit the types
+    / or method header of any provided public methods.
+    */
 
-                        //Update the table with new data. See updateTable()
-                        updateTable(routeTable, current, edge.getVertex_v(), edge);
-                    }
-                    if (!edge.getVertex_u().isVisited()) {
-                        visitedVertices.add(edge.getVertex_u());
-                        edge.getVertex_u().labelAsVisited();
 
-                        //Update the table with new data. See updateTable()
-                        updateTable(routeTable, current, edge.getVertex_u(), edge);
-                    }
-                }
-                incidenceEdgeCollection.removeAll(incidentEdges(current));
-            }
+    //Find a most direct route from u to v without looking in the route cache.
+    private ArrayList<Edge> searchMostDirectRoute(Vertex u, Vertex v) {
+        CompactGraph g = compact();
+        int source = g.indexOf(u);
+        int target = g.indexOf(v);
+
+        //Returns null if either vertex is not in the graph (this covers the empty graph), or if
+        //they are in different components, without searching.
+        if (source < 0 || target < 0 || !components.sameComponent(source, target)) {
+            return null;
+        }
+
+        Landmarks guide = landmarks();
+        if (guide != null) {
+            SearchState state = searchStates.get();
+            landmarkSearch(g, guide, state, source, target);
+            return route(g, state, target);
         }
 
-        //Finding the path
-        current = v;
-        boolean pathFound = false;
-
-        while (!pathFound) {
-            //Follow the previous vertices back from the target vertex to get the path
-            for (TableRow tableRow : routeTable) {
-                if (tableRow.getVertex() == current) {
-
-                    //If loop hits null, and current is not equal to the start vertex, then
-                    //start cannot be reached, so return null. Stop while loop when start vertex found.
-                    if (tableRow.getEdgeTraversed() != null) {
-                        intermediary.add(tableRow.getEdgeTraversed());
-                        current = tableRow.getPrevious();
-                    }else if(current == u){
-                        pathFound = true;
-                    }else{
-                        return null;
+        //Start one bfs at vertex u and one at vertex v. Each search state records the previous
+        //vertex and the edge traversed for every vertex reached from its end.
+        SearchState forward = searchStates.get();
+        SearchState backward = backwardStates.get();
+        forward.begin(g.vertexCount());
+        backward.begin(g.vertexCount());
+        forward.reach(source, -1, -1);
+        backward.reach(target, -1, -1);
+        forward.queue()[0] = source;
+        backward.queue()[0] = target;
+        int forwardHead = 0, forwardTail = 1;
+        int backwardHead = 0, backwardTail = 1;
+        int meeting = source == target ? source : -1;
+
+        while (meeting < 0 && forwardHead < forwardTail && backwardHead < backwardTail) {
+            //Expand one whole level of the side with the smaller frontier.
+            boolean fromStart = forwardTail - forwardHead <= backwardTail - backwardHead;
+            SearchState near = fromStart ? forward : backward;
+            SearchState far = fromStart ? backward : forward;
+            int[] queue = near.queue();
+            int head = fromStart ? forwardHead : backwardHead;
+            int tail = fromStart ? forwardTail : backwardTail;
+            int levelEnd = tail;
+            int shortest = Integer.MAX_VALUE;
+
+            for (; head < levelEnd; head++) {
+                int current = queue[head];
+                for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                    int next = g.target(arc);
+                    if (!near.isReached(next)) {
+                        near.reach(next, current, g.edgeId(arc));
+                        queue[tail++] = next;
+                        //A vertex reached from both ends joins up a route. Finish the level so
+                        //that the shortest of the routes found in it is kept.
+                        if (far.isReached(next) && near.hops(next) + far.hops(next) < shortest) {
+                            shortest = near.hops(next) + far.hops(next);
+                            meeting = next;
+                        }
                     }
                 }
             }
+
+            if (fromStart) {
+                forwardHead = head;
+                forwardTail = tail;
+            } else {
+                backwardHead = head;
+                backwardTail = tail;
+            }
+        }
+
+        //If the searches never met, v cannot be reached from u.
+        if (meeting < 0) {
+            return null;
         }
 
-        //The path stored in intermediary is backwards, so it has to be flipped.
-        //The flipped path is stored in arrayList path.
-        for(int f = 1; f <= intermediary.size(); f++){
-            path.add(intermediary.get(intermediary.size() - f));
+        //Join the route from u to the meeting vertex with the route from there on to v.
+        ArrayList<Edge> path = route(g, forward, meeting);
+        for (int i = meeting; backward.prevEdge(i) >= 0; i = backward.prevVertex(i)) {
+            path.add(g.edge(backward.prevEdge(i)));
         }
 
         return path;
     }
 
-    /*
-    / INSERT ALL PRIVATE METHODS USED BELOW THIS POINT
-    / You are welcome to use as many private methods as necessary, but do not edit the types
-    / or method header of any provided public methods.
-    */
+    //Add a new edge to the end of the edge list and bring every index up to date.
+    private Edge add(Edge e) {
+        requireReal(e);
+        e.setPosition(edgesList.size());
+        e.setName(edgeNames.add(e.getName(), e));
+        edgesList.add(e);
+        attach(e);
+        components.edgeInserted(e.getVertex_u().getIndex(), e.getVertex_v().getIndex());
+        compact = null;
+        version++;
+
+        return e;
+    }
 
+    //Add e to the incidence sequences of its end vertices (once only for a self-loop) and
+    //record the vertices as adjacent.
+    private void attach(Edge e) {
+        adjacency.add(e.getVertex_u().getKey(), e.getVertex_v().getKey());
+        e.getVertex_u().addIncidentEdge(e);
+        if (e.getVertex_v() != e.getVertex_u()) {
+            e.getVertex_v().addIncidentEdge(e);
+        }
+    }
+
+    //Remove e from the incidence sequences of its end vertices and the adjacency index.
+    private void detach(Edge e) {
+        adjacency.remove(e.getVertex_u().getKey(), e.getVertex_v().getKey());
+        e.getVertex_u().removeIncidentEdge(e);
+        if (e.getVertex_v() != e.getVertex_u()) {
+            e.getVertex_v().removeIncidentEdge(e);
+        }
+    }
 
-    //When updating the routeTable, the previous vertex and the edgeTraversed is added to the
-    //correct entry (vertex) in routeTable
-    private void updateTable(ArrayList<TableRow> routeTable, Vertex previous, Vertex vertex, Edge edgeTraversed) {
-        for (TableRow tableRow : routeTable) {
-            if (tableRow.getVertex() == vertex) {
-                tableRow.setPrevious(previous);
-                tableRow.setEdgeTraversed(edgeTraversed);
+    //Check in O(1) whether v is in this graph, using the position it records.
+    private boolean contains(Vertex v) {
+        int i = v == null ? -1 : v.getIndex();
+        return i >= 0 && i < verticesList.size() && verticesList.get(i) == v;
+    }
+
+    //Views keep their data in another graph, and have nowhere to hold this one's.
+    private static void requireReal(Vertex v) {
+        if (v != null && v.isView()) {
+            throw new IllegalArgumentException("Vertex " + v.getName() + " is a view of another graph's vertex, and cannot be put in a Graph");
+        }
+    }
+
+    //A vertex or edge records its position in its graph, so one cannot be shared with another.
+    private static void requireFree(Vertex v) {
+        if (v.getIndex() >= 0 || v.degree() > 0) {
+            throw new IllegalArgumentException("Vertex " + v.getName() + " is already in a graph");
+        }
+    }
+
+    private static void requireFree(Edge e) {
+        if (e.getPosition() >= 0) {
+            throw new IllegalArgumentException("Edge " + e.getName() + " is already in a graph");
+        }
+    }
+
+    private static void requireReal(Edge e) {
+        if (e.isView()) {
+            throw new IllegalArgumentException("Edge " + e.getName() + " is a view of another graph's edge, and cannot be put in a Graph");
+        }
+        requireReal(e.getVertex_u());
+        requireReal(e.getVertex_v());
+    }
+
+    //Check in O(1) whether e is in this graph, using the position it records.
+    private boolean contains(Edge e) {
+        int i = e == null ? -1 : e.getPosition();
+        return i >= 0 && i < edgesList.size() && edgesList.get(i) == e;
+    }
+
+    //Breadth-first traversal of the snapshot from start, within the current search. Vertices are
+    //appended to the search state's queue from position count onwards, and the queue doubles as
+    //the visiting order. Returns the new count.
+    private int breadthFirst(CompactGraph g, SearchState state, int start, int count) {
+        int[] queue = state.queue();
+        int head = count;
+        state.reach(start, -1, -1);
+        queue[count++] = start;
+        while (head < count) {
+            int current = queue[head++];
+            for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                int next = g.target(arc);
+                if (!state.isReached(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    queue[count++] = next;
+                }
+            }
+        }
+        return count;
+    }
+
+    //Search for the shortest route by distance from source, stopping once target is settled. If
+    //guided, each vertex is prioritised by its distance from source plus the great-circle
+    //distance to target (A*); otherwise by its distance from source alone (Dijkstra). With an
+    //admissible, consistent bound a settled vertex never improves, so none is settled twice.
+    //Returns the number of vertices settled.
+    private int distanceSearch(CompactGraph g, SearchState state, int source, int target, boolean guided) {
+        state.begin(g.vertexCount());
+        IndexedMinHeap heap = state.heap();
+        state.reach(source, -1, -1);
+        state.setCost(source, 0);
+        heap.push(source, guided ? g.greatCircle(source, target) : 0);
+        int settled = 0;
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            settled++;
+            if (current == target) {
+                break;
+            }
+            for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                int next = g.target(arc);
+                double cost = state.cost(current) + g.distance(g.edgeId(arc));
+                if (!state.isReached(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    state.setCost(next, cost);
+                    heap.push(next, guided ? cost + g.greatCircle(next, target) : cost);
+                } else if (cost < state.cost(next) && heap.contains(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    state.setCost(next, cost);
+                    heap.decrease(next, guided ? cost + g.greatCircle(next, target) : cost);
+                }
+            }
+        }
+        return settled;
+    }
+
+    //A* search for the route with the fewest edges from source, stopping once target is settled.
+    //Each vertex is prioritised by its hops from source plus the landmarks' lower bound on the
+    //hops to target. Among vertices with equal totals the one farthest from source comes first,
+    //which heads straight for target when the bound is exact. Both parts are whole numbers below
+    //n + 1, so they fit exactly in one priority.
+    private void landmarkSearch(CompactGraph g, Landmarks guide, SearchState state, int source, int target) {
+        state.begin(g.vertexCount());
+        IndexedMinHeap heap = state.heap();
+        double scale = g.vertexCount() + 1.0;
+        state.reach(source, -1, -1);
+        heap.push(source, guide.lowerBound(source, target) * scale);
+
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            if (current == target) {
+                break;
+            }
+            int hops = state.hops(current) + 1;
+            for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                int next = g.target(arc);
+                if (!state.isReached(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    heap.push(next, (hops + guide.lowerBound(next, target)) * scale - hops);
+                } else if (hops < state.hops(next) && heap.contains(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    heap.decrease(next, (hops + guide.lowerBound(next, target)) * scale - hops);
+                }
+            }
+        }
+    }
+
+    //Breadth-first search from source that stops once target is taken off the queue. Returns
+    //the number of vertices taken off the queue.
+    private int breadthFirstSettled(CompactGraph g, SearchState state, int source, int target) {
+        state.begin(g.vertexCount());
+        int[] queue = state.queue();
+        int head = 0;
+        int count = 0;
+        state.reach(source, -1, -1);
+        queue[count++] = source;
+        while (head < count) {
+            int current = queue[head++];
+            if (current == target) {
+                break;
             }
+            for (int arc = g.firstArc(current); arc < g.endArc(current); arc++) {
+                int next = g.target(arc);
+                if (!state.isReached(next)) {
+                    state.reach(next, current, g.edgeId(arc));
+                    queue[count++] = next;
+                }
+            }
+        }
+        return head;
+    }
+
+    //Follow the previous vertices recorded in a search state back from target to get the
+    //route to it, then flip it so that it runs from the start vertex.
+    private ArrayList<Edge> route(CompactGraph g, SearchState state, int target) {
+        ArrayList<Edge> path = new ArrayList<>();
+        for (int i = target; state.prevEdge(i) >= 0; i = state.prevVertex(i)) {
+            path.add(g.edge(state.prevEdge(i)));
+        }
+        Collections.reverse(path);
+        return path;
+    }
+
+    //Landmarks together with the version of the graph they were built for, so that both can be
+    //read with a single volatile read.
+    private static class VersionedLandmarks {
+        private final Landmarks landmarks;
+        private final long version;
+
+        VersionedLandmarks(Landmarks landmarks, long version) {
+            this.landmarks = landmarks;
+            this.version = version;
         }
     }
 
@@ -0,0 +1,290 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * Saves a graph to a binary file and loads it back, much faster than building it up again with
+ * insertVertex and insertEdge. The file is a fixed header followed by a run of arrays, each
+ * stored whole, so loading it is a matter of copying them out of memory rather than parsing:
+ *
+ * <pre>
+ * header       int magic, int format version, int |V|, int |E|, int strings, int string bytes
+ * strings      int[strings + 1] start of each string in the bytes that follow, then the end
+ *              byte[string bytes] every distinct name once, in UTF-8
+ * vertices     int[|V|] name of each vertex as a string number, or -1 for none
+ *              double[|V|] latitude, double[|V|] longitude, NaN if not known
+ *              long[|V| + 1] CSR offsets: vertex i has offsets[i+1] - offsets[i] incident edges
+ * edges        int[|E|] u and int[|E|] v as vertex numbers, int[|E|] name as a string number
+ *              double[|E|] travel time, double[|E|] distance
+ * arcs         int[offsets[|V|]] the vertex at the other end of each incident edge, and
+ *              int[offsets[|V|]] the edge number, vertex by vertex in incidence order
+ * </pre>
+ *
+ * Numbers are big-endian. Vertices and edges are numbered by their positions in the graph's
+ * lists, which they keep when loaded. Each name is stored once however often it is used, and
+ * loaded vertices and edges with the same name share one String.
+ *
+ * A file is read by mapping it into memory with FileChannel.map, one array at a time so that no
+ * single mapping comes near the 2GB limit. The incidence sequences of the loaded graph are sized
+ * from the CSR offsets up front and filled in edge order. The arcs are not needed to load a graph,
+ * but let a MappedGraph search the file without building anything on the heap. To write a graph
+ * too large to build on the heap first, use a SnapshotWriter.
+ */
+public class GraphSnapshot {
+    static final int MAGIC = 0x47524E53; // "GRNS"
+    static final int FORMAT_VERSION = 2;
+    static final int HEADER_BYTES = 6 * Integer.BYTES;
+
+    /**
+     * Save a graph to a file, which is created or overwritten.
+     *
+     * @param graph the graph
+     * @param file  the file to write
+     * @throws IOException if the file cannot be written, or the names take up more than 2GB
+     */
+    public static void write(Graph graph, Path file) throws IOException {
+        ArrayList<Vertex> vertices = graph.vertices();
+        ArrayList<Edge> edges = graph.edges();
+
+        //Number the distinct names in the order they are first used.
+        HashMap<String, Integer> ids = new HashMap<>();
+        ArrayList<byte[]> strings = new ArrayList<>();
+        int[] vertexNames = new int[vertices.size()];
+        int[] edgeNames = new int[edges.size()];
+        long stringBytes = 0;
+        for (int i = 0; i < vertices.size(); i++) {
+            vertexNames[i] = id(vertices.get(i).getName(), ids, strings);
+        }
+        for (int e = 0; e < edges.size(); e++) {
+            edgeNames[e] = id(edges.get(e).getName(), ids, strings);
+        }
+        for (byte[] string : strings) {
+            stringBytes += string.length;
+        }
+        if (stringBytes > Integer.MAX_VALUE) {
+            throw new IOException("Names take up too much space to save: " + stringBytes + " bytes");
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeInt(vertices.size());
+            out.writeInt(edges.size());
+            out.writeInt(strings.size());
+            out.writeInt((int) stringBytes);
+
+            int start = 0;
+            for (byte[] string : strings) {
+                out.writeInt(start);
+                start += string.length;
+            }
+            out.writeInt(start);
+            for (byte[] string : strings) {
+                out.write(string);
+            }
+
+            for (int name : vertexNames) {
+                out.writeInt(name);
+            }
+            for (Vertex vertex : vertices) {
+                out.writeDouble(vertex.getLatitude());
+            }
+            for (Vertex vertex : vertices) {
+                out.writeDouble(vertex.getLongitude());
+            }
+            long offset = 0;
+            out.writeLong(offset);
+            for (Vertex vertex : vertices) {
+                offset += vertex.degree();
+                out.writeLong(offset);
+            }
+
+            for (Edge edge : edges) {
+                out.writeInt(edge.getVertex_u().getIndex());
+            }
+            for (Edge edge : edges) {
+                out.writeInt(edge.getVertex_v().getIndex());
+            }
+            for (int name : edgeNames) {
+                out.writeInt(name);
+            }
+            for (Edge edge : edges) {
+                out.writeDouble(edge.getTravelTime());
+            }
+            for (Edge edge : edges) {
+                out.writeDouble(edge.getDistance());
+            }
+
+            for (Vertex vertex : vertices) {
+                for (Edge edge : vertex.getIncidentEdges()) {
+                    Vertex u = edge.getVertex_u();
+                    out.writeInt(u == vertex ? edge.getVertex_v().getIndex() : u.getIndex());
+                }
+            }
+            for (Vertex vertex : vertices) {
+                for (Edge edge : vertex.getIncidentEdges()) {
+                    out.writeInt(edge.getPosition());
+                }
+            }
+        }
+    }
+
+    /**
+     * Load a graph from a file written by write.
+     *
+     * @param file the file to read
+     * @return a new graph
+     * @throws IOException if the file cannot be read, or is not a graph snapshot
+     */
+    public static Graph read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Reader in = new Reader(channel);
+            ByteBuffer header = in.map(HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a graph snapshot: " + file);
+            }
+            int version = header.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+            }
+            int n = header.getInt();
+            int m = header.getInt();
+            int stringCount = header.getInt();
+            int stringBytes = header.getInt();
+            if (n < 0 || m < 0 || stringCount < 0 || stringCount == Integer.MAX_VALUE || stringBytes < 0) {
+                throw new IOException("Corrupt graph snapshot: " + file);
+            }
+
+            //Decode each distinct name once.
+            int[] starts = in.ints(stringCount + 1);
+            ByteBuffer mapped = in.map(stringBytes);
+            byte[] bytes = new byte[stringBytes];
+            mapped.get(bytes);
+            String[] strings = new String[stringCount];
+            for (int s = 0; s < stringCount; s++) {
+                if (starts[s] < 0 || starts[s] > starts[s + 1] || starts[s + 1] > stringBytes) {
+                    throw new IOException("Corrupt graph snapshot, string " + s + " is out of range: " + file);
+                }
+                strings[s] = new String(bytes, starts[s], starts[s + 1] - starts[s], StandardCharsets.UTF_8);
+            }
+
+            int[] vertexNames = in.ints(n);
+            double[] latitudes = in.doubles(n);
+            double[] longitudes = in.doubles(n);
+            long[] offsets = in.longs(n + 1);
+            int[] us = in.ints(m);
+            int[] vs = in.ints(m);
+            int[] edgeNames = in.ints(m);
+            double[] travelTimes = in.doubles(m);
+            double[] distances = in.doubles(m);
+
+            //The offsets size the incidence sequences, so they are checked against the edges
+            //before anything is reserved: a corrupt file must not cause a huge allocation.
+            long arcs = 0;
+            for (int e = 0; e < m; e++) {
+                if (us[e] < 0 || us[e] >= n || vs[e] < 0 || vs[e] >= n) {
+                    throw new IOException("Corrupt graph snapshot, edge " + e + " has no end vertex: " + file);
+                }
+                arcs += us[e] == vs[e] ? 1 : 2;
+            }
+            if (offsets[0] != 0 || offsets[n] != arcs) {
+                throw new IOException("Corrupt graph snapshot, offsets do not match the edges: " + file);
+            }
+            for (int i = 0; i < n; i++) {
+                if (offsets[i + 1] < offsets[i] || offsets[i + 1] - offsets[i] > Integer.MAX_VALUE) {
+                    throw new IOException("Corrupt graph snapshot, vertex " + i + " has degree " + (offsets[i + 1] - offsets[i]) + ": " + file);
+                }
+            }
+
+            ArrayList<Vertex> vertices = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                Vertex vertex = new Vertex(name(strings, vertexNames[i]));
+                if (!Double.isNaN(latitudes[i]) && !Double.isNaN(longitudes[i])) {
+                    vertex.setLocation(latitudes[i], longitudes[i]);
+                }
+                vertex.reserveIncidentEdges((int) (offsets[i + 1] - offsets[i]));
+                vertices.add(vertex);
+            }
+            ArrayList<Edge> edges = new ArrayList<>(m);
+            for (int e = 0; e < m; e++) {
+                edges.add(new Edge(vertices.get(us[e]), vertices.get(vs[e]), name(strings, edgeNames[e]), travelTimes[e], distances[e]));
+            }
+
+            return new Graph(vertices, edges);
+        }
+    }
+
+    //The number of the given name, numbering it first if it is new. Null names are -1.
+    private static int id(String name, HashMap<String, Integer> ids, ArrayList<byte[]> strings) {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = ids.get(name);
+        if (id == null) {
+            id = strings.size();
+            ids.put(name, id);
+            strings.add(name.getBytes(StandardCharsets.UTF_8));
+        }
+        return id;
+    }
+
+    private static String name(String[] strings, int id) throws IOException {
+        if (id < -1 || id >= strings.length) {
+            throw new IOException("Corrupt graph snapshot, no string " + id);
+        }
+        return id < 0 ? null : strings[id];
+    }
+
+    //Maps one section of the file after another.
+    private static class Reader {
+        private final FileChannel channel;
+        private long position = 0;
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        //Sizes come from the header, so they are checked against the file before anything is
+        //allocated for them: a corrupt header must not cause a huge allocation.
+        ByteBuffer map(long bytes) throws IOException {
+            if (bytes < 0 || bytes > channel.size() - position) {
+                throw new IOException("Graph snapshot is cut short");
+            }
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, bytes);
+            position += bytes;
+            return buffer;
+        }
+
+        int[] ints(int count) throws IOException {
+            IntBuffer mapped = map((long) count * Integer.BYTES).asIntBuffer();
+            int[] values = new int[count];
+            mapped.get(values);
+            return values;
+        }
+
+        long[] longs(int count) throws IOException {
+            LongBuffer mapped = map((long) count * Long.BYTES).asLongBuffer();
+            long[] values = new long[count];
+            mapped.get(values);
+            return values;
+        }
+
+        double[] doubles(int count) throws IOException {
+            DoubleBuffer mapped = map((long) count * Double.BYTES).asDoubleBuffer();
+            double[] values = new double[count];
+            mapped.get(values);
+            return values;
+        }
+    }
+}
@@ -0,0 +1,300 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The number of hops on a most direct route between every pair of vertices of a CompactGraph.
+ * It is worked out with a breadth-first search from every vertex. The searches are run in
+ * batches of 64 that share a single pass over the graph: each vertex keeps one bit per source
+ * in a long, so a whole batch moves through an edge with one bitwise operation (multi-source
+ * BFS, Then et al. 2014). The batches are run in parallel on a ForkJoinPool.
+ *
+ * Each entry takes as few bytes as possible. In a connected component no route is longer than
+ * twice the hops from any one of its vertices to the farthest vertex from it. A search from one
+ * vertex per component therefore gives a bound on every entry before the matrix is filled, and
+ * the entries are stored as bytes, shorts or ints to fit the bound. On a rail network a byte is
+ * almost always enough, so the matrix for 20,000 stations takes 400MB.
+ *
+ * The matrix is kept in heap buffers, or in a file that is mapped into memory so that it does
+ * not take up heap space. Row i holds the hops from vertex i and rows are stored in order, each
+ * entry in big-endian order. Each buffer holds a whole number of rows, because a single buffer
+ * cannot exceed 2GB.
+ */
+public class HopMatrix {
+    private static final int BATCH = 64; // sources searched together, one per bit of a long
+
+    private final CompactGraph graph;
+    private final int n;
+    private final int width;        // bytes per entry: 1, 2 or 4
+    private final int unreachable;  // entry value meaning no route, the largest value that fits
+    private final int rowsPerChunk; // rows held by each buffer
+    private final ByteBuffer[] chunks;
+
+    /**
+     * Work out the hops between every pair of vertices of the given snapshot, keeping the matrix
+     * on the heap.
+     *
+     * @param graph the snapshot
+     * @param pool  the pool to run the searches on
+     */
+    public HopMatrix(CompactGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        n = graph.vertexCount();
+        width = widthFor(graph);
+        unreachable = width == 4 ? -1 : (1 << (8 * width)) - 1;
+        rowsPerChunk = rowsPerChunk(n, width);
+        chunks = new ByteBuffer[n == 0 ? 0 : (n - 1) / rowsPerChunk + 1];
+        for (int c = 0; c < chunks.length; c++) {
+            chunks[c] = ByteBuffer.allocate(chunkRows(c) * n * width);
+        }
+        fill(pool);
+    }
+
+    /**
+     * Work out the hops between every pair of vertices of the given snapshot, keeping the matrix
+     * in the given file, which is created or overwritten. The file stays mapped into memory for
+     * as long as the matrix is in use.
+     *
+     * @param graph the snapshot
+     * @param pool  the pool to run the searches on
+     * @param file  the file to keep the matrix in
+     * @throws IOException if the file cannot be written
+     */
+    public HopMatrix(CompactGraph graph, ForkJoinPool pool, Path file) throws IOException {
+        this.graph = graph;
+        n = graph.vertexCount();
+        width = widthFor(graph);
+        unreachable = width == 4 ? -1 : (1 << (8 * width)) - 1;
+        rowsPerChunk = rowsPerChunk(n, width);
+        chunks = new ByteBuffer[n == 0 ? 0 : (n - 1) / rowsPerChunk + 1];
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //A mapping stays valid after its channel has been closed.
+            for (int c = 0; c < chunks.length; c++) {
+                long start = (long) c * rowsPerChunk * n * width;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, (long) chunkRows(c) * n * width);
+            }
+        }
+        fill(pool);
+    }
+
+    /**
+     * Get the number of vertices, which is the number of rows and of columns.
+     *
+     * @return int
+     */
+    public int size() {
+        return n;
+    }
+
+    /**
+     * Get the number of bytes used for each entry: 1, 2 or 4.
+     *
+     * @return int
+     */
+    public int bytesPerEntry() {
+        return width;
+    }
+
+    /**
+     * Get the number of hops on a most direct route between the vertices with indices i and j,
+     * or -1 if there is no route between them.
+     *
+     * @param i a vertex index
+     * @param j a vertex index
+     * @return int
+     */
+    public int hops(int i, int j) {
+        ByteBuffer chunk = chunks[i / rowsPerChunk];
+        int position = ((i % rowsPerChunk) * n + j) * width;
+        int value;
+        if (width == 1) {
+            value = chunk.get(position) & 0xFF;
+        } else if (width == 2) {
+            value = chunk.getShort(position) & 0xFFFF;
+        } else {
+            value = chunk.getInt(position);
+        }
+        return value == unreachable ? -1 : value;
+    }
+
+    /**
+     * Get the number of hops on a most direct route between u and v, or -1 if there is no route
+     * between them or either is not part of the snapshot.
+     *
+     * @param u a vertex
+     * @param v a vertex
+     * @return int
+     */
+    public int hops(Vertex u, Vertex v) {
+        int i = graph.indexOf(u);
+        int j = graph.indexOf(v);
+        return i < 0 || j < 0 ? -1 : hops(i, j);
+    }
+
+    private int chunkRows(int c) {
+        return Math.min(rowsPerChunk, n - c * rowsPerChunk);
+    }
+
+    private static int rowsPerChunk(int n, int width) {
+        return n == 0 ? 1 : Math.max(1, Integer.MAX_VALUE / (n * width));
+    }
+
+    //Choose the entry width from twice the largest hop count found by one search per component.
+    //A byte or short entry must also leave its largest value free to mean no route.
+    private static int widthFor(CompactGraph graph) {
+        int n = graph.vertexCount();
+        int[] hops = new int[n];
+        int[] queue = new int[n];
+        Arrays.fill(hops, -1);
+        long bound = 0;
+        for (int s = 0; s < n; s++) {
+            if (hops[s] < 0) {
+                bound = Math.max(bound, 2L * search(graph, s, hops, queue));
+            }
+        }
+        if (bound < 0xFF) {
+            return 1;
+        }
+        return bound < 0xFFFF ? 2 : 4;
+    }
+
+    //Breadth-first search from source over the vertices with hops of -1, recording the hops to
+    //each one reached. Returns the hops to the farthest.
+    private static int search(CompactGraph graph, int source, int[] hops, int[] queue) {
+        int head = 0;
+        int tail = 0;
+        hops[source] = 0;
+        queue[tail++] = source;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                if (hops[next] < 0) {
+                    hops[next] = hops[current] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return hops[queue[tail - 1]];
+    }
+
+    private void fill(ForkJoinPool pool) {
+        if (n > 0) {
+            pool.invoke(new Rows(0, n));
+        }
+    }
+
+    //Fills a range of rows, splitting it until at most one batch of sources is left, which is
+    //then searched directly. Splits fall on whole batches.
+    private class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from, to;
+
+        Rows(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > BATCH) {
+                int batches = (to - from + BATCH - 1) / BATCH;
+                int mid = from + batches / 2 * BATCH;
+                invokeAll(new Rows(from, mid), new Rows(mid, to));
+                return;
+            }
+
+            //Search from every source in the batch at once. Bit b of a vertex's word stands for
+            //source from + b: seen marks the sources that have reached the vertex, and current
+            //and next the sources for which it is in the current and next frontier.
+            long[] seen = new long[n];
+            long[] current = new long[n];
+            long[] next = new long[n];
+            int[] frontier = new int[n];
+            int[] found = new int[n];
+            int frontierSize = 0;
+
+            //The rows are built in a scratch buffer, starting with every entry set to no route.
+            //All of the bytes of that value are 0xFF, whatever the width.
+            ByteBuffer rows = ByteBuffer.allocate((to - from) * n * width);
+            Arrays.fill(rows.array(), (byte) -1);
+
+            for (int s = from; s < to; s++) {
+                long bit = 1L << (s - from);
+                seen[s] |= bit;
+                if (current[s] == 0) {
+                    frontier[frontierSize++] = s;
+                }
+                current[s] |= bit;
+                store(rows, (s - from) * n + s, 0);
+            }
+
+            for (int level = 1; frontierSize > 0; level++) {
+                //Pass each frontier vertex's sources on to neighbours they have not yet reached.
+                int foundSize = 0;
+                for (int f = 0; f < frontierSize; f++) {
+                    int v = frontier[f];
+                    long sources = current[v];
+                    for (int arc = graph.firstArc(v); arc < graph.endArc(v); arc++) {
+                        int w = graph.target(arc);
+                        long reached = sources & ~seen[w];
+                        if (reached != 0) {
+                            if (next[w] == 0) {
+                                found[foundSize++] = w;
+                            }
+                            next[w] |= reached;
+                        }
+                    }
+                }
+
+                //The newly reached vertices form the next frontier.
+                for (int f = 0; f < frontierSize; f++) {
+                    current[frontier[f]] = 0;
+                }
+                for (int f = 0; f < foundSize; f++) {
+                    int w = found[f];
+                    long reached = next[w];
+                    seen[w] |= reached;
+                    for (long bits = reached; bits != 0; bits &= bits - 1) {
+                        store(rows, Long.numberOfTrailingZeros(bits) * n + w, level);
+                    }
+                }
+                long[] swap = current;
+                current = next;
+                next = swap;
+                int[] swapList = frontier;
+                frontier = found;
+                found = swapList;
+                frontierSize = foundSize;
+            }
+
+            //Copy the rows across. Different tasks write to different rows, and a duplicate has
+            //its own position, so the tasks do not get in each other's way.
+            for (int s = from; s < to; s++) {
+                ByteBuffer target = chunks[s / rowsPerChunk].duplicate();
+                target.position((s % rowsPerChunk) * n * width);
+                rows.limit((s - from + 1) * n * width);
+                rows.position((s - from) * n * width);
+                target.put(rows);
+            }
+        }
+    }
+
+    //Store value at entry index of a buffer of entries.
+    private void store(ByteBuffer buffer, int index, int value) {
+        if (width == 1) {
+            buffer.put(index, (byte) value);
+        } else if (width == 2) {
+            buffer.putShort(index * 2, (short) value);
+        } else {
+            buffer.putInt(index * 4, value);
+        }
+    }
+}
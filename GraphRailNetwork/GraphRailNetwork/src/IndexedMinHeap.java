@@ -0,0 +1,146 @@
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of vertex indices ordered by a double priority, with an index from each
+ * vertex to its position in the heap so that its priority can be lowered in O(log n). Priorities
+ * are kept in a primitive array, so nothing is boxed or allocated per operation.
+ *
+ * The heap is meant to be reused between searches: clear() only touches the entries still in
+ * the heap, and the arrays only ever grow.
+ */
+public class IndexedMinHeap {
+    private int[] heap = new int[0];           // vertex indices in heap order
+    private double[] priority = new double[0]; // priority of each vertex, by vertex index
+    private int[] position = new int[0];       // position of each vertex in heap, or -1 if absent
+    private int size;
+
+    /**
+     * Make sure the heap can hold vertex indices 0 to n-1.
+     *
+     * @param n the number of vertices
+     */
+    public void ensureCapacity(int n) {
+        if (position.length < n) {
+            int capacity = Math.max(n, position.length + (position.length >> 1));
+            int old = position.length;
+            heap = Arrays.copyOf(heap, capacity);
+            priority = Arrays.copyOf(priority, capacity);
+            position = Arrays.copyOf(position, capacity);
+            Arrays.fill(position, old, capacity, -1);
+        }
+    }
+
+    /**
+     * Remove every vertex from the heap.
+     */
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            position[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    /**
+     * Check whether the heap is empty.
+     *
+     * @return boolean
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Check whether vertex i is in the heap.
+     *
+     * @param i a vertex index
+     * @return boolean
+     */
+    public boolean contains(int i) {
+        return position[i] >= 0;
+    }
+
+    /**
+     * Add vertex i with priority p. The vertex must not already be in the heap.
+     *
+     * @param i a vertex index
+     * @param p its priority
+     */
+    public void push(int i, double p) {
+        heap[size] = i;
+        position[i] = size;
+        priority[i] = p;
+        siftUp(size++);
+    }
+
+    /**
+     * Lower the priority of vertex i, which must be in the heap, to p.
+     *
+     * @param i a vertex index
+     * @param p its new priority, no greater than the old one
+     */
+    public void decrease(int i, double p) {
+        priority[i] = p;
+        siftUp(position[i]);
+    }
+
+    /**
+     * Remove and return the vertex with the lowest priority.
+     *
+     * @return int vertex index
+     */
+    public int poll() {
+        int top = heap[0];
+        position[top] = -1;
+        if (--size > 0) {
+            heap[0] = heap[size];
+            position[heap[0]] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Get the priority of the vertex at the top of the heap.
+     *
+     * @return double
+     */
+    public double peekPriority() {
+        return priority[heap[0]];
+    }
+
+    private void siftUp(int k) {
+        int i = heap[k];
+        double p = priority[i];
+        while (k > 0) {
+            int parent = (k - 1) >>> 1;
+            if (priority[heap[parent]] <= p) {
+                break;
+            }
+            heap[k] = heap[parent];
+            position[heap[k]] = k;
+            k = parent;
+        }
+        heap[k] = i;
+        position[i] = k;
+    }
+
+    private void siftDown(int k) {
+        int i = heap[k];
+        double p = priority[i];
+        int half = size >>> 1;
+        while (k < half) {
+            int child = 2 * k + 1;
+            if (child + 1 < size && priority[heap[child + 1]] < priority[heap[child]]) {
+                child++;
+            }
+            if (p <= priority[heap[child]]) {
+                break;
+            }
+            heap[k] = heap[child];
+            position[heap[k]] = k;
+            k = child;
+        }
+        heap[k] = i;
+        position[i] = k;
+    }
+}
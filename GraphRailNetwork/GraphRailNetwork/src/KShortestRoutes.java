@@ -0,0 +1,230 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Finds the k most direct loopless routes between two vertices of a CompactGraph with Yen's
+ * algorithm, for suggesting alternatives when the most direct route is disrupted. A route is
+ * loopless if it visits no vertex twice. Routes count as different if they use different edges,
+ * so two routes that only differ by which of two parallel edges they take are both found.
+ *
+ * Each new route is found by leaving an earlier one at one of its vertices, the spur vertex,
+ * and searching for the rest of the way with the edges that earlier routes took from there and
+ * the vertices before it blocked. Only spur vertices at or after the point where the earlier
+ * route left its own parent are tried (Lawler's improvement), as the others were tried when
+ * the parent was found.
+ *
+ * Before the first route is found, a breadth-first search from the target gives the hops from
+ * every vertex to the target. Blocking vertices and edges can only make routes longer, so these
+ * are lower bounds for every spur search, which can therefore be an A* search. Where the spur
+ * vertex still has a most direct route to the target, the bound is exact and the search walks
+ * straight down it, instead of spreading out over the whole network.
+ *
+ * The spur searches all share one SearchState, and the blocked vertices and edges are marked
+ * with the number of the spur search, so nothing has to be cleared between searches.
+ */
+public class KShortestRoutes {
+    private final CompactGraph graph;
+    private final SearchState state;
+    private final int[] blockedVertex; // number of the spur search that blocks each vertex
+    private final int[] blockedEdge;   // number of the spur search that blocks each edge
+    private final int[] toTarget;      // hops from each vertex to the target, or -1
+    private int spur = 0;       // number of the current spur search
+    private long sequence = 0;  // number of routes found, to order routes of the same length
+
+    /**
+     * Construct a route finder for the given snapshot.
+     *
+     * @param graph the snapshot
+     * @param state the search state to use for the spur searches
+     */
+    public KShortestRoutes(CompactGraph graph, SearchState state) {
+        this.graph = graph;
+        this.state = state;
+        blockedVertex = new int[graph.vertexCount()];
+        blockedEdge = new int[graph.edgeCount()];
+        toTarget = new int[graph.vertexCount()];
+    }
+
+    /**
+     * Find up to k loopless routes between the vertices with indices source and target, most
+     * direct first. Routes with the same number of edges come in the order they were found.
+     *
+     * @param source a vertex index
+     * @param target a vertex index
+     * @param k      the largest number of routes to find
+     * @return the routes, or an empty list if there are none
+     */
+    public List<ArrayList<Edge>> find(int source, int target, int k) {
+        List<ArrayList<Edge>> routes = new ArrayList<>();
+        if (k <= 0) {
+            return routes;
+        }
+        hopsTo(target);
+        spur++; //Nothing is blocked in the first search.
+        Path first = search(source, target, null, 0);
+        if (first == null) {
+            return routes;
+        }
+
+        List<Path> found = new ArrayList<>();
+        PriorityQueue<Path> candidates = new PriorityQueue<>();
+        HashSet<Path> seen = new HashSet<>();
+        found.add(first);
+        seen.add(first);
+
+        while (found.size() < k) {
+            Path previous = found.get(found.size() - 1);
+            for (int i = previous.deviation; i < previous.edges.length; i++) {
+                //Block the vertices before the spur vertex, so the route stays loopless, and the
+                //next edge of every route found so far that shares this route's first i edges.
+                spur++;
+                for (int j = 0; j < i; j++) {
+                    blockedVertex[previous.vertices[j]] = spur;
+                }
+                for (Path path : found) {
+                    if (path.edges.length > i && path.sharesStart(previous, i)) {
+                        blockedEdge[path.edges[i]] = spur;
+                    }
+                }
+                Path candidate = search(previous.vertices[i], target, previous, i);
+                if (candidate != null && seen.add(candidate)) {
+                    candidates.add(candidate);
+                }
+            }
+            if (candidates.isEmpty()) {
+                break;
+            }
+            found.add(candidates.poll());
+        }
+
+        for (Path path : found) {
+            ArrayList<Edge> route = new ArrayList<>(path.edges.length);
+            for (int e : path.edges) {
+                route.add(graph.edge(e));
+            }
+            routes.add(route);
+        }
+        return routes;
+    }
+
+    //Fill in toTarget with a breadth-first search from target.
+    private void hopsTo(int target) {
+        Arrays.fill(toTarget, -1);
+        state.begin(graph.vertexCount());
+        int[] queue = state.queue();
+        int head = 0;
+        int tail = 0;
+        toTarget[target] = 0;
+        queue[tail++] = target;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                if (toTarget[next] < 0) {
+                    toTarget[next] = toTarget[current] + 1;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    //A* search from start to target that avoids everything blocked by the current spur search,
+    //guided by toTarget. Among vertices with equal totals the one farthest from start comes
+    //first, and both parts are whole numbers below n + 1, so they fit exactly in one priority.
+    //If found, the route is joined onto the first i edges of root, or is the whole route if
+    //root is null. Returns null if target cannot be reached.
+    private Path search(int start, int target, Path root, int i) {
+        state.begin(graph.vertexCount());
+        IndexedMinHeap heap = state.heap();
+        double scale = graph.vertexCount() + 1.0;
+        state.reach(start, -1, -1);
+        heap.push(start, toTarget[start] * scale);
+        while (!heap.isEmpty()) {
+            int current = heap.poll();
+            if (current == target) {
+                break;
+            }
+            int hops = state.hops(current) + 1;
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                int edge = graph.edgeId(arc);
+                if (blockedVertex[next] == spur || blockedEdge[edge] == spur) {
+                    continue;
+                }
+                if (!state.isReached(next)) {
+                    state.reach(next, current, edge);
+                    heap.push(next, (hops + toTarget[next]) * scale - hops);
+                } else if (hops < state.hops(next) && heap.contains(next)) {
+                    state.reach(next, current, edge);
+                    heap.decrease(next, (hops + toTarget[next]) * scale - hops);
+                }
+            }
+        }
+        if (!state.isReached(target)) {
+            return null;
+        }
+
+        //Lay the route out as the root followed by the spur route, read back from target.
+        int spurLength = state.hops(target);
+        int[] vertices = new int[i + spurLength + 1];
+        int[] edges = new int[i + spurLength];
+        if (root != null) {
+            System.arraycopy(root.vertices, 0, vertices, 0, i);
+            System.arraycopy(root.edges, 0, edges, 0, i);
+        }
+        int position = i + spurLength;
+        for (int v = target; v != start; v = state.prevVertex(v)) {
+            vertices[position] = v;
+            edges[--position] = state.prevEdge(v);
+        }
+        vertices[i] = start;
+        return new Path(vertices, edges, i, ++sequence);
+    }
+
+    //A route as vertex and edge indices. It left the route it was found from at vertex number
+    //deviation. Routes are ordered by length, then by when they were found.
+    private static class Path implements Comparable<Path> {
+        private final int[] vertices;
+        private final int[] edges;
+        private final int deviation;
+        private final long order;
+
+        Path(int[] vertices, int[] edges, int deviation, long order) {
+            this.vertices = vertices;
+            this.edges = edges;
+            this.deviation = deviation;
+            this.order = order;
+        }
+
+        //Check whether the first i edges of this route and other are the same.
+        boolean sharesStart(Path other, int i) {
+            for (int j = 0; j < i; j++) {
+                if (edges[j] != other.edges[j]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int compareTo(Path other) {
+            if (edges.length != other.edges.length) {
+                return Integer.compare(edges.length, other.edges.length);
+            }
+            return Long.compare(order, other.order);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Path && Arrays.equals(edges, ((Path) o).edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+}
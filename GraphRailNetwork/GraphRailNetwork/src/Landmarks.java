@@ -0,0 +1,242 @@
+import java.util.Arrays;
+
+/**
+ * A set of landmark vertices together with the number of hops from each landmark to every
+ * vertex of a CompactGraph, for guiding most direct route searches (the ALT technique: A*,
+ * landmarks and the triangle inequality).
+ *
+ * For any landmark L and vertices v and t, the triangle inequality gives
+ * hops(v, t) >= |hops(L, t) - hops(L, v)|, so the largest such difference over all landmarks is
+ * a lower bound on the number of hops still to go from v to t. The bound is consistent, so an
+ * A* search guided by it never needs to settle a vertex twice. It is tightest for routes that
+ * head towards or away from a landmark, so landmarks are best spread around the edge of the
+ * network.
+ *
+ * Landmarks are chosen in one of two ways. Farthest-point selection repeatedly picks the vertex
+ * that is the most hops from every landmark chosen so far; a vertex that no landmark can reach
+ * counts as infinitely far, so every component gets a landmark before any gets a second one.
+ * Planar selection splits the map around the centre of the located vertices into equal sectors
+ * and picks the vertex in each sector farthest from the centre, falling back to farthest-point
+ * selection for sectors with no located vertices.
+ *
+ * The tables are stored vertex by vertex, so the hops from all landmarks to one vertex lie next
+ * to each other in memory. They describe the graph as it was when they were built;
+ * Graph.useLandmarks describes when Graph builds new ones.
+ */
+public class Landmarks {
+    private static final int UNREACHED = -1;
+
+    private final int count;
+    private final int[] landmarks; // vertex index of each landmark
+    private final int[] hops;      // hops[v * count + l] is the hops from landmark l to v, or -1
+
+    /**
+     * Choose k landmarks of the given snapshot by farthest-point selection and build their tables.
+     *
+     * @param graph the snapshot
+     * @param k     the number of landmarks; fewer are chosen if the graph has fewer vertices
+     */
+    public Landmarks(CompactGraph graph, int k) {
+        this(graph, k, false);
+    }
+
+    /**
+     * Choose k landmarks of the given snapshot and build their tables.
+     *
+     * @param graph  the snapshot
+     * @param k      the number of landmarks; fewer are chosen if the graph has fewer vertices
+     * @param planar true to choose the landmarks by planar selection, false for farthest-point
+     */
+    public Landmarks(CompactGraph graph, int k, boolean planar) {
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of landmarks cannot be negative: " + k);
+        }
+        int n = graph.vertexCount();
+        count = Math.min(k, n);
+        landmarks = new int[count];
+        hops = new int[n * count];
+        int[] queue = new int[n];
+
+        int chosen = 0;
+        if (planar) {
+            chosen = planarSelection(graph);
+            for (int l = 0; l < chosen; l++) {
+                search(graph, l, queue);
+            }
+        }
+
+        //Each vertex's hops from the nearest landmark so far, with unreached vertices farthest.
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        for (int l = 0; l < chosen; l++) {
+            closer(nearest, l);
+        }
+        if (chosen == 0 && count > 0) {
+            //Start from the vertex farthest from vertex 0 in its component, which tends to be on
+            //the edge of the network rather than in the middle.
+            landmarks[0] = 0;
+            search(graph, 0, queue);
+            int start = 0;
+            for (int v = 1; v < n; v++) {
+                if (hops(0, v) > hops(0, start)) {
+                    start = v;
+                }
+            }
+            landmarks[0] = start;
+            search(graph, 0, queue);
+            closer(nearest, 0);
+            chosen = 1;
+        }
+        for (; chosen < count; chosen++) {
+            landmarks[chosen] = farthest(nearest);
+            search(graph, chosen, queue);
+            closer(nearest, chosen);
+        }
+    }
+
+    /**
+     * Get the number of landmarks.
+     *
+     * @return int
+     */
+    public int count() {
+        return count;
+    }
+
+    /**
+     * Get the vertex index of landmark l.
+     *
+     * @param l a landmark number, from 0 to count()-1
+     * @return int
+     */
+    public int landmark(int l) {
+        return landmarks[l];
+    }
+
+    /**
+     * Get the number of hops from landmark l to the vertex with index v, or -1 if v cannot be
+     * reached from the landmark.
+     *
+     * @param l a landmark number
+     * @param v a vertex index
+     * @return int
+     */
+    public int hops(int l, int v) {
+        return hops[v * count + l];
+    }
+
+    /**
+     * Get a lower bound on the number of hops between the vertices with indices v and t. It is 0
+     * if no landmark can reach both of them.
+     *
+     * @param v a vertex index
+     * @param t a vertex index
+     * @return int
+     */
+    public int lowerBound(int v, int t) {
+        int bound = 0;
+        int a = v * count;
+        int b = t * count;
+        for (int l = 0; l < count; l++) {
+            int fromV = hops[a + l];
+            int fromT = hops[b + l];
+            if (fromV != UNREACHED && fromT != UNREACHED) {
+                bound = Math.max(bound, Math.abs(fromT - fromV));
+            }
+        }
+        return bound;
+    }
+
+    //Fill in the table of landmark l with a breadth-first search from it.
+    private void search(CompactGraph graph, int l, int[] queue) {
+        int n = graph.vertexCount();
+        for (int v = 0; v < n; v++) {
+            hops[v * count + l] = UNREACHED;
+        }
+        int head = 0;
+        int tail = 0;
+        hops[landmarks[l] * count + l] = 0;
+        queue[tail++] = landmarks[l];
+        while (head < tail) {
+            int current = queue[head++];
+            int nextHops = hops[current * count + l] + 1;
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                if (hops[next * count + l] == UNREACHED) {
+                    hops[next * count + l] = nextHops;
+                    queue[tail++] = next;
+                }
+            }
+        }
+    }
+
+    //Lower each vertex's entry in nearest to its hops from landmark l, if l can reach it.
+    private void closer(int[] nearest, int l) {
+        for (int v = 0; v < nearest.length; v++) {
+            int h = hops[v * count + l];
+            if (h != UNREACHED && h < nearest[v]) {
+                nearest[v] = h;
+            }
+        }
+    }
+
+    //The vertex with the largest entry in nearest, taking the lowest index on a tie.
+    private static int farthest(int[] nearest) {
+        int best = 0;
+        for (int v = 1; v < nearest.length; v++) {
+            if (nearest[v] > nearest[best]) {
+                best = v;
+            }
+        }
+        return best;
+    }
+
+    //Choose up to count landmarks by splitting the located vertices into sectors around their
+    //centre. Positions are projected onto a plane by scaling longitude by the cosine of the
+    //centre's latitude, which is close enough for choosing landmarks. Returns how many were
+    //chosen; they fill the start of the landmarks array.
+    private int planarSelection(CompactGraph graph) {
+        int n = graph.vertexCount();
+        double sumLat = 0, sumLon = 0;
+        int located = 0;
+        for (int v = 0; v < n; v++) {
+            if (graph.vertex(v).hasLocation()) {
+                sumLat += graph.vertex(v).getLatitude();
+                sumLon += graph.vertex(v).getLongitude();
+                located++;
+            }
+        }
+        if (located == 0 || count == 0) {
+            return 0;
+        }
+        double centreLat = sumLat / located;
+        double centreLon = sumLon / located;
+        double scale = Math.cos(Math.toRadians(centreLat));
+
+        int[] best = new int[count];
+        double[] bestDistance = new double[count];
+        Arrays.fill(best, -1);
+        for (int v = 0; v < n; v++) {
+            if (!graph.vertex(v).hasLocation()) {
+                continue;
+            }
+            double y = graph.vertex(v).getLatitude() - centreLat;
+            double x = (graph.vertex(v).getLongitude() - centreLon) * scale;
+            double angle = Math.atan2(y, x) + Math.PI; // 0 to 2 pi
+            int sector = Math.min(count - 1, (int) (angle / (2 * Math.PI) * count));
+            double distance = x * x + y * y;
+            if (best[sector] < 0 || distance > bestDistance[sector]) {
+                best[sector] = v;
+                bestDistance[sector] = distance;
+            }
+        }
+
+        int chosen = 0;
+        for (int sector = 0; sector < count; sector++) {
+            if (best[sector] >= 0) {
+                landmarks[chosen++] = best[sector];
+            }
+        }
+        return chosen;
+    }
+}
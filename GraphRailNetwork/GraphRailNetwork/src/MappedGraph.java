@@ -0,0 +1,539 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A read-only graph that works straight from a snapshot file written by GraphSnapshot or a
+ * SnapshotWriter, mapped into memory, so that a graph far larger than the Java heap can be
+ * searched without loading it. Nothing is copied onto the heap when the file is opened: names,
+ * end vertices, weights and incidence sequences are all read from the mapping when asked for, so
+ * the garbage collector never sees the graph and its pauses do not grow with it. The operating
+ * system keeps a single copy of the file in memory however many processes map it, so several JVMs
+ * on one host can share one copy of a large network.
+ *
+ * The file is addressed with long offsets and mapped in chunks of 1GB, as no single mapping can
+ * be larger than 2GB. Each chunk also maps the first few bytes of the next, so that a number that
+ * starts in one chunk can always be read from it whole.
+ *
+ * As in an ArrayGraph, the Vertex and Edge objects handed out are views onto the file, holding
+ * only a vertex or edge number. A new view is made each time one is handed out, so views must be
+ * compared with equals rather than ==. Vertices and edges can also be looked up one at a time by
+ * number, which unlike vertices and edges needs no memory for the rest of the graph.
+ *
+ * A MappedGraph cannot be changed, so it has the queries of the GraphADT interface but not its
+ * insert, remove and rename methods, and does not implement it. To change a network that fits on
+ * the heap, load it into a Graph with Graph.load, change that, and save it again; to build one
+ * that does not, write it with a SnapshotWriter.
+ *
+ * Only the header and the sizes of the sections are checked when a file is opened. A file that
+ * is corrupt beyond that may give wrong answers or exceptions from the methods reading it.
+ */
+public class MappedGraph {
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_BITS;
+
+    private final ByteBuffer[] chunks; // chunk c maps the file from c * CHUNK_BYTES
+    private final int vertexCount;
+    private final int edgeCount;
+    private final int stringCount;
+
+    //Where each section starts in the file.
+    private final long stringStarts;
+    private final long stringBytes;
+    private final long vertexNames;
+    private final long latitudes;
+    private final long longitudes;
+    private final long offsets;
+    private final long edgeU;
+    private final long edgeV;
+    private final long edgeNames;
+    private final long travelTimes;
+    private final long distances;
+    private final long targets;
+    private final long arcEdges;
+
+    /**
+     * Open a snapshot file for reading. The file should not be changed while it is open.
+     *
+     * @param file a file written by GraphSnapshot.write or Graph.save
+     * @return the graph in the file
+     * @throws IOException if the file cannot be read, or is not a graph snapshot
+     */
+    public static MappedGraph open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new MappedGraph(channel, file);
+        }
+    }
+
+    private MappedGraph(FileChannel channel, Path file) throws IOException {
+        long size = channel.size();
+        if (size < GraphSnapshot.HEADER_BYTES) {
+            throw new IOException("Not a graph snapshot: " + file);
+        }
+        ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, GraphSnapshot.HEADER_BYTES);
+        if (header.getInt() != GraphSnapshot.MAGIC) {
+            throw new IOException("Not a graph snapshot: " + file);
+        }
+        int version = header.getInt();
+        if (version != GraphSnapshot.FORMAT_VERSION) {
+            throw new IOException("Unsupported graph snapshot version " + version + ": " + file);
+        }
+        vertexCount = header.getInt();
+        edgeCount = header.getInt();
+        stringCount = header.getInt();
+        int bytes = header.getInt();
+        if (vertexCount < 0 || edgeCount < 0 || stringCount < 0 || bytes < 0) {
+            throw new IOException("Corrupt graph snapshot: " + file);
+        }
+
+        long n = vertexCount;
+        long m = edgeCount;
+        stringStarts = GraphSnapshot.HEADER_BYTES;
+        stringBytes = stringStarts + (stringCount + 1L) * Integer.BYTES;
+        vertexNames = stringBytes + bytes;
+        latitudes = vertexNames + n * Integer.BYTES;
+        longitudes = latitudes + n * Double.BYTES;
+        offsets = longitudes + n * Double.BYTES;
+        edgeU = offsets + (n + 1) * Long.BYTES;
+        edgeV = edgeU + m * Integer.BYTES;
+        edgeNames = edgeV + m * Integer.BYTES;
+        travelTimes = edgeNames + m * Integer.BYTES;
+        distances = travelTimes + m * Double.BYTES;
+        targets = distances + m * Double.BYTES;
+        if (size < targets) {
+            throw new IOException("Graph snapshot is cut short: " + file);
+        }
+
+        //Map the whole file, so that the arc count can be read to find where the arcs end.
+        chunks = new ByteBuffer[(int) ((size + CHUNK_BYTES - 1) >>> CHUNK_BITS)];
+        for (int c = 0; c < chunks.length; c++) {
+            long start = (long) c << CHUNK_BITS;
+            chunks[c] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(CHUNK_BYTES + Long.BYTES, size - start));
+        }
+        long arcs = getLong(offsets + n * Long.BYTES);
+        arcEdges = targets + arcs * Integer.BYTES;
+        if (arcs < 0 || arcs > 2 * m || size < arcEdges + arcs * Integer.BYTES) {
+            throw new IOException("Graph snapshot is cut short: " + file);
+        }
+    }
+
+    /**
+     * Return the end vertex of edge e opposite to the end vertex w.
+     *
+     * @param e an edge
+     * @param w a vertex
+     * @return a view of the opposite vertex, or null if e or w is not in the graph or w is not an
+     * end vertex of e
+     */
+    public Vertex opposite(Edge e, Vertex w) {
+        int id = edgeId(e);
+        int end = vertexId(w);
+        if (id < 0 || end < 0) {
+            return null;
+        }
+        int u = getInt(edgeU + (long) id * Integer.BYTES);
+        int v = getInt(edgeV + (long) id * Integer.BYTES);
+        if (u == end) {
+            return new MappedVertex(v);
+        }
+        return v == end ? new MappedVertex(u) : null;
+    }
+
+    /**
+     * Get a view of the vertex with the given number: its position in the list of the graph that
+     * was saved, or the number SnapshotWriter.addVertex returned for it.
+     *
+     * @param i a vertex number
+     * @return a view of the vertex, or null if there is no vertex i
+     */
+    public Vertex vertex(int i) {
+        return i >= 0 && i < vertexCount ? new MappedVertex(i) : null;
+    }
+
+    /**
+     * Get a view of the edge with the given number: its position in the list of the graph that
+     * was saved, or the number SnapshotWriter.addEdge returned for it.
+     *
+     * @param e an edge number
+     * @return a view of the edge, or null if there is no edge e
+     */
+    public Edge edge(int e) {
+        return e >= 0 && e < edgeCount ? new MappedEdge(e) : null;
+    }
+
+    /**
+     * Return a list of views of all of the vertices in the graph, in the order they were saved.
+     * For a very large graph, this list alone may not fit on the heap.
+     *
+     * @return ArrayList<Vertex>
+     */
+    public ArrayList<Vertex> vertices() {
+        ArrayList<Vertex> list = new ArrayList<>(vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            list.add(new MappedVertex(i));
+        }
+        return list;
+    }
+
+    /**
+     * Return a list of views of all of the edges in the graph, in the order they were saved. For
+     * a very large graph, this list alone may not fit on the heap.
+     *
+     * @return ArrayList<Edge>
+     */
+    public ArrayList<Edge> edges() {
+        ArrayList<Edge> list = new ArrayList<>(edgeCount);
+        for (int e = 0; e < edgeCount; e++) {
+            list.add(new MappedEdge(e));
+        }
+        return list;
+    }
+
+    /**
+     * Check whether two vertices are joined by an edge, by scanning the incidence sequence of
+     * whichever has the lower degree. Rail networks have few edges at each station, so this is
+     * only a handful of reads.
+     *
+     * @param v a vertex
+     * @param w a vertex
+     * @return boolean
+     */
+    public boolean areAdjacent(Vertex v, Vertex w) {
+        int a = vertexId(v);
+        int b = vertexId(w);
+        if (a < 0 || b < 0) {
+            return false;
+        }
+        if (degree(b) < degree(a)) {
+            int swap = a;
+            a = b;
+            b = swap;
+        }
+        long end = firstArc(a + 1);
+        for (long arc = firstArc(a); arc < end; arc++) {
+            if (getInt(targets + arc * Integer.BYTES) == b) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a list of views of the edges incident to v, in the order they were saved.
+     *
+     * @param v a vertex
+     * @return ArrayList<Edge>, empty if v is not in the graph
+     */
+    public ArrayList<Edge> incidentEdges(Vertex v) {
+        int id = vertexId(v);
+        if (id < 0) {
+            return new ArrayList<>();
+        }
+        long start = firstArc(id);
+        long end = firstArc(id + 1);
+        ArrayList<Edge> list = new ArrayList<>((int) (end - start));
+        for (long arc = start; arc < end; arc++) {
+            list.add(new MappedEdge(getInt(arcEdges + arc * Integer.BYTES)));
+        }
+        return list;
+    }
+
+    /**
+     * Get the number of vertices in the graph.
+     *
+     * @return int
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Get the number of edges in the graph.
+     *
+     * @return int
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Perform a breadth-first search traversal of the connected component that contains v,
+     * reading the incidence sequences straight from the file. Apart from the list returned, it
+     * uses one bit and one int of heap for each vertex in the graph.
+     *
+     * @param v a vertex to start from
+     * @return a list of views of the vertices in the order visited, or an empty list if v is not
+     * in the graph
+     */
+    public ArrayList<Vertex> bfTraverse(Vertex v) {
+        int start = vertexId(v);
+        if (start < 0) {
+            return new ArrayList<>();
+        }
+        long[] visited = new long[(vertexCount + 63) >>> 6];
+        int[] queue = new int[vertexCount];
+        int head = 0;
+        int tail = 0;
+        visited[start >>> 6] |= 1L << start;
+        queue[tail++] = start;
+        while (head < tail) {
+            int current = queue[head++];
+            long end = firstArc(current + 1);
+            for (long arc = firstArc(current); arc < end; arc++) {
+                int next = getInt(targets + arc * Integer.BYTES);
+                if ((visited[next >>> 6] & 1L << next) == 0) {
+                    visited[next >>> 6] |= 1L << next;
+                    queue[tail++] = next;
+                }
+            }
+        }
+
+        ArrayList<Vertex> order = new ArrayList<>(tail);
+        for (int i = 0; i < tail; i++) {
+            order.add(new MappedVertex(queue[i]));
+        }
+        return order;
+    }
+
+    //The position of vertex i's first arc; that of vertex i + 1 is one past its last.
+    private long firstArc(int i) {
+        return getLong(offsets + (long) i * Long.BYTES);
+    }
+
+    private int degree(int i) {
+        return (int) (firstArc(i + 1) - firstArc(i));
+    }
+
+    private String string(int id) {
+        if (id < 0) {
+            return null;
+        }
+        int start = getInt(stringStarts + (long) id * Integer.BYTES);
+        int end = getInt(stringStarts + (id + 1L) * Integer.BYTES);
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = getByte(stringBytes + start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    //Reads use absolute positions, so any number of threads can read at once.
+    private ByteBuffer chunk(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)];
+    }
+
+    private byte getByte(long position) {
+        return chunk(position).get((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    private int getInt(long position) {
+        return chunk(position).getInt((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    private long getLong(long position) {
+        return chunk(position).getLong((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    private double getDouble(long position) {
+        return chunk(position).getDouble((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    //The number of a vertex view, or -1 if it is not a view of this graph.
+    private int vertexId(Vertex v) {
+        return v instanceof MappedVertex && ((MappedVertex) v).graph() == this ? ((MappedVertex) v).id : -1;
+    }
+
+    //The number of an edge view, or -1 if it is not a view of this graph.
+    private int edgeId(Edge e) {
+        return e instanceof MappedEdge && ((MappedEdge) e).graph() == this ? ((MappedEdge) e).id : -1;
+    }
+
+    private static UnsupportedOperationException readOnly() {
+        return new UnsupportedOperationException("A MappedGraph cannot be changed");
+    }
+
+    //A vertex as seen from outside: its number in the file.
+    private class MappedVertex extends Vertex {
+        private final int id;
+
+        MappedVertex(int id) {
+            this.id = id;
+        }
+
+        MappedGraph graph() {
+            return MappedGraph.this;
+        }
+
+        @Override
+        public String getName() {
+            return string(getInt(vertexNames + (long) id * Integer.BYTES));
+        }
+
+        @Override
+        public void setName(String n) {
+            throw readOnly();
+        }
+
+        @Override
+        public boolean hasLocation() {
+            return !Double.isNaN(getLatitude()) && !Double.isNaN(getLongitude());
+        }
+
+        @Override
+        public double getLatitude() {
+            return getDouble(latitudes + (long) id * Double.BYTES);
+        }
+
+        @Override
+        public double getLongitude() {
+            return getDouble(longitudes + (long) id * Double.BYTES);
+        }
+
+        @Override
+        public ArrayList<Edge> getIncidentEdges() {
+            return incidentEdges(this);
+        }
+
+        @Override
+        protected void setLocation(double lat, double lon) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void setIndex(int i) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void reserveIncidentEdges(int n) {
+        }
+
+        @Override
+        public int degree() {
+            return MappedGraph.this.degree(id);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MappedVertex && ((MappedVertex) o).graph() == graph() && ((MappedVertex) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getName());
+        }
+    }
+
+    //An edge as seen from outside: its number in the file.
+    private class MappedEdge extends Edge {
+        private final int id;
+
+        MappedEdge(int id) {
+            super(null, null, null);
+            this.id = id;
+        }
+
+        MappedGraph graph() {
+            return MappedGraph.this;
+        }
+
+        @Override
+        protected boolean isView() {
+            return true;
+        }
+
+        @Override
+        public Vertex getVertex_u() {
+            return new MappedVertex(getInt(edgeU + (long) id * Integer.BYTES));
+        }
+
+        @Override
+        public Vertex getVertex_v() {
+            return new MappedVertex(getInt(edgeV + (long) id * Integer.BYTES));
+        }
+
+        @Override
+        public String getName() {
+            return string(getInt(edgeNames + (long) id * Integer.BYTES));
+        }
+
+        @Override
+        public void setName(String n) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void setTravelTime(double t) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void setDistance(double d) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void setIndex(Vertex w, int i) {
+            throw readOnly();
+        }
+
+        @Override
+        protected void setPosition(int i) {
+            throw readOnly();
+        }
+
+        @Override
+        public double getTravelTime() {
+            return getDouble(travelTimes + (long) id * Double.BYTES);
+        }
+
+        @Override
+        public double getDistance() {
+            return getDouble(distances + (long) id * Double.BYTES);
+        }
+
+        //The position of the edge in v's incidence sequence, found by scanning it.
+        @Override
+        public int getIndex(Vertex v) {
+            int end = vertexId(v);
+            if (end < 0) {
+                return -1;
+            }
+            long start = firstArc(end);
+            for (long arc = start; arc < firstArc(end + 1); arc++) {
+                if (getInt(arcEdges + arc * Integer.BYTES) == id) {
+                    return (int) (arc - start);
+                }
+            }
+            return -1;
+        }
+
+        @Override
+        public void removeVertices() {
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof MappedEdge && ((MappedEdge) o).graph() == graph() && ((MappedEdge) o).id == id;
+        }
+
+        @Override
+        public int hashCode() {
+            return id;
+        }
+
+        @Override
+        public String toString() {
+            return String.valueOf(getName());
+        }
+    }
+}
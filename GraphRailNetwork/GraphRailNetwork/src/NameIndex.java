@@ -0,0 +1,125 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.function.Function;
+
+/**
+ * A hash index from names to the vertices or edges that have them, so they can be looked up by
+ * name in O(1) expected time instead of by scanning the graph. Names need not be unique: a name
+ * used once maps straight to its item, and a name shared by several items maps to a set of them,
+ * so adding and removing are O(1) expected time either way.
+ *
+ * The index also interns names. Every item with a given name is given the same String as the
+ * first item added with that name, so a name shared by thousands of edges is stored only once.
+ * Items with a null name are not indexed.
+ *
+ * @param <T> Vertex or Edge
+ */
+public class NameIndex<T> {
+    private final HashMap<String, Object> entries; // an item, or a Shared set of items
+    private final Function<T, String> nameOf;
+
+    /**
+     * Construct an empty index.
+     *
+     * @param nameOf   gets the name of an item
+     * @param expected the number of names expected
+     */
+    public NameIndex(Function<T, String> nameOf, int expected) {
+        this.nameOf = nameOf;
+        entries = new HashMap<>(Math.max(16, expected * 4 / 3 + 1));
+    }
+
+    /**
+     * Add an item under the given name, which should be its current name.
+     *
+     * @param name the name
+     * @param item the item
+     * @return the copy of the name that every item with this name shares, for the item to take
+     * on; null if the name is null
+     */
+    @SuppressWarnings("unchecked")
+    public String add(String name, T item) {
+        if (name == null) {
+            return null;
+        }
+        Object entry = entries.get(name);
+        if (entry == null) {
+            entries.put(name, item);
+            return name;
+        }
+        Shared<T> shared;
+        if (entry instanceof Shared) {
+            shared = (Shared<T>) entry;
+        } else {
+            shared = new Shared<>();
+            shared.items.add((T) entry);
+            entries.put(name, shared);
+        }
+        shared.items.add(item);
+        return nameOf.apply(shared.items.iterator().next());
+    }
+
+    /**
+     * Remove an item from under the given name, which should be the name it was added with.
+     *
+     * @param name the name
+     * @param item the item
+     */
+    @SuppressWarnings("unchecked")
+    public void remove(String name, T item) {
+        if (name == null) {
+            return;
+        }
+        Object entry = entries.get(name);
+        if (entry == item) {
+            entries.remove(name);
+        } else if (entry instanceof Shared) {
+            Shared<T> shared = (Shared<T>) entry;
+            shared.items.remove(item);
+            if (shared.items.size() == 1) {
+                entries.put(name, shared.items.iterator().next());
+            }
+        }
+    }
+
+    /**
+     * Get an item with the given name. If several have it, the one added first is returned.
+     *
+     * @param name the name
+     * @return an item, or null if none has the name
+     */
+    @SuppressWarnings("unchecked")
+    public T first(String name) {
+        Object entry = name == null ? null : entries.get(name);
+        if (entry instanceof Shared) {
+            return ((Shared<T>) entry).items.iterator().next();
+        }
+        return (T) entry;
+    }
+
+    /**
+     * Get every item with the given name, in the order they were added.
+     *
+     * @param name the name
+     * @return a new list of the items, empty if none has the name
+     */
+    @SuppressWarnings("unchecked")
+    public ArrayList<T> all(String name) {
+        Object entry = name == null ? null : entries.get(name);
+        if (entry instanceof Shared) {
+            return new ArrayList<>(((Shared<T>) entry).items);
+        }
+        ArrayList<T> items = new ArrayList<>(1);
+        if (entry != null) {
+            items.add((T) entry);
+        }
+        return items;
+    }
+
+    //The items sharing a name, in the order they were added. A class of its own, so it cannot
+    //be mistaken for an item.
+    private static class Shared<T> {
+        private final LinkedHashSet<T> items = new LinkedHashSet<>();
+    }
+}
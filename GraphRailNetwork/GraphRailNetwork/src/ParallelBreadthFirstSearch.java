@@ -0,0 +1,244 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntConsumer;
+
+/**
+ * A level-synchronous breadth-first search over a CompactGraph that processes each level in
+ * parallel on a ForkJoinPool. Vertices are claimed through an atomic visited bitset, so each one
+ * is added to exactly one frontier.
+ *
+ * Each level is expanded in one of two directions. Top-down, the frontier vertices look at their
+ * neighbours and claim the unvisited ones. Bottom-up, the unvisited vertices look for a neighbour
+ * in the frontier, and can stop at the first one found. Bottom-up is cheaper when the frontier
+ * covers a large part of the remaining graph, so the search switches between the two using the
+ * heuristic of Beamer, Asanovic and Patterson (2012).
+ *
+ * Graphs with fewer vertices than the threshold are searched sequentially, as the cost of
+ * splitting the work up would outweigh the gain.
+ */
+public class ParallelBreadthFirstSearch {
+    public static final int DEFAULT_THRESHOLD = 1 << 16; // vertices below which to stay sequential
+    private static final int ALPHA = 14; // go bottom-up once frontier arcs exceed unexplored arcs / ALPHA
+    private static final int BETA = 24;  // go back top-down once the frontier is under |V| / BETA
+    private static final int CHUNK = 2048; // frontier entries or vertices handled by one task
+
+    private final CompactGraph graph;
+    private final ForkJoinPool pool;
+    private final int threshold;
+
+    /**
+     * Construct a search over the given snapshot, using the default threshold.
+     *
+     * @param graph the snapshot to search
+     * @param pool  the pool to run tasks on
+     */
+    public ParallelBreadthFirstSearch(CompactGraph graph, ForkJoinPool pool) {
+        this(graph, pool, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Construct a search over the given snapshot.
+     *
+     * @param graph     the snapshot to search
+     * @param pool      the pool to run tasks on
+     * @param threshold the number of vertices below which the search is sequential
+     */
+    public ParallelBreadthFirstSearch(CompactGraph graph, ForkJoinPool pool, int threshold) {
+        this.graph = graph;
+        this.pool = pool;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Find every vertex reachable from the vertex with index source. The vertices are returned
+     * level by level, so nearer vertices come first, but the order within a level is not fixed.
+     *
+     * @param source a vertex index
+     * @return the indices of the reachable vertices
+     */
+    public int[] reachable(int source) {
+        int n = graph.vertexCount();
+        if (n < threshold) {
+            return sequential(source);
+        }
+
+        AtomicLongArray visited = new AtomicLongArray((n + 63) >>> 6);
+        int[] order = new int[n];
+        int count = 0;
+        long unexploredArcs = 0;
+        for (int i = 0; i < n; i++) {
+            unexploredArcs += graph.degree(i);
+        }
+
+        claim(visited, source);
+        order[count++] = source;
+        unexploredArcs -= graph.degree(source);
+        int levelStart = 0;
+        boolean bottomUp = false;
+
+        while (levelStart < count) {
+            int levelEnd = count;
+            int frontierSize = levelEnd - levelStart;
+            long frontierArcs = 0;
+            for (int i = levelStart; i < levelEnd; i++) {
+                frontierArcs += graph.degree(order[i]);
+            }
+
+            //Decide which way to expand this level.
+            if (!bottomUp && frontierArcs > unexploredArcs / ALPHA) {
+                bottomUp = true;
+            } else if (bottomUp && frontierSize < n / BETA) {
+                bottomUp = false;
+            }
+
+            int[][] found = bottomUp
+                    ? bottomUpStep(visited, order, levelStart, levelEnd)
+                    : topDownStep(visited, order, levelStart, levelEnd);
+
+            //Append the vertices found by each task to form the next level.
+            for (int[] part : found) {
+                for (int i = 1; i <= part[0]; i++) {
+                    order[count++] = part[i];
+                    unexploredArcs -= graph.degree(part[i]);
+                }
+            }
+            levelStart = levelEnd;
+        }
+
+        return Arrays.copyOf(order, count);
+    }
+
+    //Each task claims the unvisited neighbours of its share of the frontier. The vertices found
+    //by a task are returned with their count in element 0.
+    private int[][] topDownStep(AtomicLongArray visited, int[] order, int from, int to) {
+        int tasks = (to - from + CHUNK - 1) / CHUNK;
+        int[][] found = new int[tasks][];
+        pool.invoke(new Split(0, tasks, task -> {
+            int start = from + task * CHUNK;
+            int end = Math.min(to, start + CHUNK);
+            int[] out = new int[17];
+            int size = 0;
+            for (int i = start; i < end; i++) {
+                int current = order[i];
+                for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                    int next = graph.target(arc);
+                    if (!isSet(visited, next) && claim(visited, next)) {
+                        if (++size == out.length) {
+                            out = Arrays.copyOf(out, out.length * 2);
+                        }
+                        out[size] = next;
+                    }
+                }
+            }
+            out[0] = size;
+            found[task] = out;
+        }));
+        return found;
+    }
+
+    //Each task checks its share of the vertices, adding each unvisited one that has a neighbour
+    //in the frontier. Frontier membership is read from a plain bitset built before the step.
+    private int[][] bottomUpStep(AtomicLongArray visited, int[] order, int from, int to) {
+        int n = graph.vertexCount();
+        long[] frontier = new long[(n + 63) >>> 6];
+        for (int i = from; i < to; i++) {
+            frontier[order[i] >>> 6] |= 1L << order[i];
+        }
+        int tasks = (n + CHUNK - 1) / CHUNK;
+        int[][] found = new int[tasks][];
+        pool.invoke(new Split(0, tasks, task -> {
+            int start = task * CHUNK;
+            int end = Math.min(n, start + CHUNK);
+            int[] out = new int[17];
+            int size = 0;
+            for (int v = start; v < end; v++) {
+                if (isSet(visited, v)) {
+                    continue;
+                }
+                for (int arc = graph.firstArc(v); arc < graph.endArc(v); arc++) {
+                    int w = graph.target(arc);
+                    if ((frontier[w >>> 6] & (1L << w)) != 0) {
+                        //Only this task looks at v during the step, so the claim succeeds.
+                        claim(visited, v);
+                        if (++size == out.length) {
+                            out = Arrays.copyOf(out, out.length * 2);
+                        }
+                        out[size] = v;
+                        break;
+                    }
+                }
+            }
+            out[0] = size;
+            found[task] = out;
+        }));
+        return found;
+    }
+
+    //Plain breadth-first search for small graphs.
+    private int[] sequential(int source) {
+        boolean[] visited = new boolean[graph.vertexCount()];
+        int[] order = new int[graph.vertexCount()];
+        int head = 0;
+        int count = 0;
+        visited[source] = true;
+        order[count++] = source;
+        while (head < count) {
+            int current = order[head++];
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                if (!visited[next]) {
+                    visited[next] = true;
+                    order[count++] = next;
+                }
+            }
+        }
+        return Arrays.copyOf(order, count);
+    }
+
+    private static boolean isSet(AtomicLongArray bits, int i) {
+        return (bits.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    //Atomically set bit i. Returns true if this call set it, false if it was already set.
+    private static boolean claim(AtomicLongArray bits, int i) {
+        int word = i >>> 6;
+        long mask = 1L << i;
+        while (true) {
+            long old = bits.get(word);
+            if ((old & mask) != 0) {
+                return false;
+            }
+            if (bits.compareAndSet(word, old, old | mask)) {
+                return true;
+            }
+        }
+    }
+
+    //Splits a range of task numbers in half until single tasks remain, then runs each one.
+    private static class Split extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int lo, hi;
+        private final IntConsumer leaf;
+
+        Split(int lo, int hi, IntConsumer leaf) {
+            this.lo = lo;
+            this.hi = hi;
+            this.leaf = leaf;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo <= 1) {
+                if (hi > lo) {
+                    leaf.accept(lo);
+                }
+                return;
+            }
+            int mid = (lo + hi) >>> 1;
+            invokeAll(new Split(lo, mid, leaf), new Split(mid, hi, leaf));
+        }
+    }
+}
@@ -0,0 +1,270 @@
+import java.util.Random;
+
+/**
+ * Generates synthetic rail networks that look like real ones, for load and scale testing. The
+ * same seed, station count and segment count always give exactly the same network, and it has
+ * exactly that many stations and segments.
+ *
+ * A network is grown the way real ones were. Hub interchanges are placed one at a time, each a
+ * short distance from a hub placed before it, and trunk lines are run between them, first as a
+ * tree joining every hub and then as extra lines that close loops. Stations along the trunk lines
+ * are spread between them, and branch lines of several stations leave from hubs and trunk
+ * stations towards termini, with short sidings off some stations. About 1% of the stations are
+ * put on islands, small lines not joined to the rest. Any segments left over once every station
+ * has been joined up become fast lines that skip a trunk station, or second tracks beside one.
+ *
+ * Every station is given a location, and every segment a distance in kilometres, a little longer
+ * than the straight line between its ends as track never runs straight, and a travel time in
+ * minutes at the line speed of its kind of line. So the fastest and shortest routes work on
+ * generated networks as well as the most direct one.
+ *
+ * Stations and segments are inserted into the graph as they are generated, so apart from the
+ * graph itself only the hubs are kept in memory, and that is one for every 200 stations.
+ */
+public class RailNetworkGenerator {
+    private static final double EARTH_RADIUS_KM = 6371.0;
+    private static final double KM_PER_DEGREE = EARTH_RADIUS_KM * Math.PI / 180;
+    //Line speeds in km/h.
+    private static final double TRUNK_SPEED = 160, BRANCH_SPEED = 90, SIDING_SPEED = 15;
+
+    private final long seed;
+    private final int stations;
+    private final int segments;
+
+    /**
+     * Construct a generator. A network of n stations needs at least n - 1 segments, as apart from
+     * the islands every station is joined to every other.
+     *
+     * @param seed     seed for the random choices
+     * @param stations how many stations to generate, at least 1
+     * @param segments how many segments to generate, at least stations - 1, and 0 if there is
+     *                 only one station
+     */
+    public RailNetworkGenerator(long seed, int stations, int segments) {
+        if (stations < 1 || segments < stations - 1 || (stations == 1 && segments > 0)) {
+            throw new IllegalArgumentException("Cannot generate " + stations + " stations with " + segments + " segments");
+        }
+        this.seed = seed;
+        this.stations = stations;
+        this.segments = segments;
+    }
+
+    /**
+     * Generate a network into a new graph.
+     *
+     * @return a new graph
+     */
+    public Graph generate() {
+        Graph graph = new Graph();
+        addTo(graph);
+        return graph;
+    }
+
+    /**
+     * Generate a network into an existing graph, alongside whatever is already in it.
+     *
+     * @param graph the graph
+     */
+    public void addTo(Graph graph) {
+        new Build(graph).run();
+    }
+
+    //The state of one run of the generator.
+    private class Build {
+        private final Random random = new Random(seed);
+        private final Graph graph;
+        //What is still to be made, and how many places are left to put it.
+        private int branchesLeft, branchStationsLeft, sidingsLeft, slotsLeft;
+        private int extrasLeft, extraSlotsLeft;
+        private int branchCount = 0, sidingCount = 0;
+
+        Build(Graph graph) {
+            this.graph = graph;
+        }
+
+        void run() {
+            int islandStations = stations >= 200 ? stations / 100 : 0;
+            int islands = islandStations == 0 ? 0 : Math.max(1, islandStations / 5);
+            int main = stations - islandStations;
+            int hubs = Math.min(main, 2 + main / 200);
+            int rest = main - hubs;
+            int sidings = rest / 20;
+            int branchStations = (int) (rest * 7L / 20);
+            int trunkStations = rest - sidings - branchStations;
+
+            //Joining everything up takes one segment fewer than there are stations on each
+            //network. Some of the rest close loops between hubs, and the others are extras.
+            int extras = segments - (stations - 1 - islands);
+            int loops = hubs >= 3 ? Math.min(hubs / 3, extras / 2) : 0;
+            int lines = hubs - 1 + loops;
+            extrasLeft = extras - loops;
+            extraSlotsLeft = lines + trunkStations;
+            branchStationsLeft = branchStations;
+            branchesLeft = branchStations == 0 ? 0 : Math.max(1, branchStations / 10);
+            sidingsLeft = sidings;
+            slotsLeft = hubs + trunkStations;
+
+            //Each hub is placed a little way from a random earlier one, which it is joined to.
+            Vertex[] hub = new Vertex[hubs];
+            double[] hubLat = new double[hubs];
+            double[] hubLon = new double[hubs];
+            int[] parent = new int[hubs];
+            hubLat[0] = 54.0;
+            hubLon[0] = -2.0;
+            hub[0] = graph.insertVertex("Hub 0", hubLat[0], hubLon[0]);
+            for (int h = 1; h < hubs; h++) {
+                parent[h] = random.nextInt(h);
+                double bearing = random.nextDouble() * 2 * Math.PI;
+                double km = 25 + random.nextDouble() * 50;
+                hubLat[h] = hubLat[parent[h]] + km * Math.cos(bearing) / KM_PER_DEGREE;
+                hubLon[h] = hubLon[parent[h]] + km * Math.sin(bearing) / KM_PER_DEGREE / Math.cos(Math.toRadians(hubLat[h]));
+                hub[h] = graph.insertVertex("Hub " + h, hubLat[h], hubLon[h]);
+            }
+            for (int h = 0; h < hubs; h++) {
+                slot(hub[h]);
+            }
+
+            //The first hubs - 1 lines make a tree; the rest each close a loop.
+            int trunkLeft = trunkStations;
+            for (int line = 0; line < lines; line++) {
+                int from, to;
+                if (line < hubs - 1) {
+                    to = line + 1;
+                    from = parent[to];
+                } else {
+                    from = hubs - 1 - (line - (hubs - 1));
+                    if (parent[from] != 0) {
+                        to = parent[parent[from]];
+                    } else {
+                        do {
+                            to = random.nextInt(hubs);
+                        } while (to == from || to == parent[from]);
+                    }
+                }
+                int count = share(trunkLeft, lines - line);
+                trunkLeft -= count;
+                trunk(line, hub[from], hub[to], count);
+            }
+
+            int islandStationsLeft = islandStations;
+            for (int island = 0; island < islands; island++) {
+                int size = share(islandStationsLeft, islands - island);
+                islandStationsLeft -= size;
+                island(island, size);
+            }
+        }
+
+        //A trunk line of count stations from one hub to another, with any extra segments.
+        private void trunk(int line, Vertex from, Vertex to, int count) {
+            String name = "Trunk " + line;
+            Vertex previous = from;
+            Vertex beforePrevious = null;
+            for (int i = 1; i <= count; i++) {
+                double t = (double) i / (count + 1);
+                double jitter = 1 / KM_PER_DEGREE;
+                Vertex station = graph.insertVertex(name + "/" + i,
+                        from.getLatitude() + t * (to.getLatitude() - from.getLatitude()) + (random.nextDouble() - 0.5) * jitter,
+                        from.getLongitude() + t * (to.getLongitude() - from.getLongitude()) + (random.nextDouble() - 0.5) * jitter);
+                segment(previous, station, name, TRUNK_SPEED);
+                extras(beforePrevious, previous, station, name);
+                slot(station);
+                beforePrevious = previous;
+                previous = station;
+            }
+            segment(previous, to, name, TRUNK_SPEED);
+            extras(beforePrevious, previous, to, name);
+        }
+
+        //This trunk segment's share of the extra segments: first a fast line skipping the
+        //station before, if there is one, then second tracks.
+        private void extras(Vertex beforePrevious, Vertex previous, Vertex station, String name) {
+            int count = share(extrasLeft, extraSlotsLeft);
+            extrasLeft -= count;
+            extraSlotsLeft--;
+            for (int i = 0; i < count; i++) {
+                if (i == 0 && beforePrevious != null) {
+                    segment(beforePrevious, station, name + " fast", TRUNK_SPEED);
+                } else {
+                    segment(previous, station, name, TRUNK_SPEED);
+                }
+            }
+        }
+
+        //This station's share of the branch lines and sidings.
+        private void slot(Vertex station) {
+            int branches = share(branchesLeft, slotsLeft);
+            int sidings = share(sidingsLeft, slotsLeft);
+            slotsLeft--;
+            for (int b = 0; b < branches; b++) {
+                int length = share(branchStationsLeft, branchesLeft);
+                branchStationsLeft -= length;
+                branchesLeft--;
+                branch(station, length);
+            }
+            sidingsLeft -= sidings;
+            for (int s = 0; s < sidings; s++) {
+                String name = "Siding " + sidingCount++;
+                double bearing = random.nextDouble() * 2 * Math.PI;
+                Vertex siding = graph.insertVertex(name, station.getLatitude() + 0.5 * Math.cos(bearing) / KM_PER_DEGREE,
+                        station.getLongitude() + 0.5 * Math.sin(bearing) / KM_PER_DEGREE);
+                segment(station, siding, name, SIDING_SPEED);
+            }
+        }
+
+        //A branch line of length stations, heading off from a station in roughly one direction.
+        private void branch(Vertex from, int length) {
+            String name = "Branch " + branchCount++;
+            double bearing = random.nextDouble() * 2 * Math.PI;
+            Vertex previous = from;
+            for (int i = 1; i <= length; i++) {
+                bearing += (random.nextDouble() - 0.5) * 0.5;
+                double km = 3 + random.nextDouble() * 5;
+                Vertex station = graph.insertVertex(name + "/" + i, previous.getLatitude() + km * Math.cos(bearing) / KM_PER_DEGREE,
+                        previous.getLongitude() + km * Math.sin(bearing) / KM_PER_DEGREE);
+                segment(previous, station, name, BRANCH_SPEED);
+                previous = station;
+            }
+        }
+
+        //A line of size stations, not joined to anything else.
+        private void island(int island, int size) {
+            String name = "Island " + island;
+            double lat = 49 + random.nextDouble() * 11;
+            double lon = -9 + random.nextDouble() * 12;
+            Vertex previous = null;
+            for (int i = 1; i <= size; i++) {
+                Vertex station = graph.insertVertex(name + "/" + i, lat, lon);
+                if (previous != null) {
+                    segment(previous, station, name, BRANCH_SPEED);
+                }
+                previous = station;
+                lat += (random.nextDouble() - 0.5) * 10 / KM_PER_DEGREE;
+                lon += (random.nextDouble() - 0.5) * 10 / KM_PER_DEGREE;
+            }
+        }
+
+        private void segment(Vertex u, Vertex v, String name, double speed) {
+            //Track winds, so it is a little longer than the great-circle distance.
+            double km = greatCircle(u, v) * (1.05 + random.nextDouble() * 0.2);
+            graph.insertEdge(u, v, name, km / speed * 60, km);
+        }
+
+        //A random share of left things between slots places, so that once every place has had
+        //its share, exactly left have been handed out. The last place gets all that is left.
+        private int share(int left, int slots) {
+            if (left <= 0 || slots <= 0) {
+                return 0;
+            }
+            return left / slots + (random.nextInt(slots) < left % slots ? 1 : 0);
+        }
+    }
+
+    //Haversine formula, in kilometres.
+    private static double greatCircle(Vertex u, Vertex v) {
+        double lat1 = Math.toRadians(u.getLatitude()), lat2 = Math.toRadians(v.getLatitude());
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(v.getLongitude() - u.getLongitude()) / 2);
+        double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1, Math.sqrt(h)));
+    }
+}
@@ -0,0 +1,149 @@
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache of routes between pairs of vertices, for when the same few journeys are asked
+ * for again and again. Once it is full, the route used least recently is evicted to make room.
+ *
+ * Every route is stored with the version of the graph it was found in, which counts the vertices
+ * and edges inserted and removed. When a lookup or store comes with a newer version, every route
+ * is dropped, since any of them might now be wrong. Routes are copied on the way in and out, so
+ * callers are free to change the lists they are given.
+ *
+ * Routes are keyed by the ordered pair of vertex keys, so a route from u to v and one from v to
+ * u are stored separately. All methods are synchronized.
+ */
+public class RouteCache {
+    private final int capacity;
+    private final LinkedHashMap<Long, ArrayList<Edge>> routes;
+    private long version = -1;
+    private long hits, misses, evictions, invalidations;
+
+    /**
+     * Construct an empty cache.
+     *
+     * @param capacity the largest number of routes to keep
+     */
+    public RouteCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+        //Access order keeps the least recently used route first, ready to be evicted.
+        this.routes = new LinkedHashMap<Long, ArrayList<Edge>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ArrayList<Edge>> eldest) {
+                if (size() > RouteCache.this.capacity) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Look up the route from u to v, as found in the given version of the graph.
+     *
+     * @param version the current version of the graph
+     * @param u       start vertex
+     * @param v       end vertex
+     * @return a copy of the route, or null if it is not in the cache
+     */
+    public synchronized ArrayList<Edge> get(long version, Vertex u, Vertex v) {
+        update(version);
+        ArrayList<Edge> route = this.version == version ? routes.get(key(u, v)) : null;
+        if (route == null) {
+            misses++;
+            return null;
+        }
+        hits++;
+        return new ArrayList<>(route);
+    }
+
+    /**
+     * Store the route from u to v, as found in the given version of the graph. A route from an
+     * older version than the cache has already seen is ignored.
+     *
+     * @param version the version of the graph the route was found in
+     * @param u       start vertex
+     * @param v       end vertex
+     * @param route   the route
+     */
+    public synchronized void put(long version, Vertex u, Vertex v, ArrayList<Edge> route) {
+        update(version);
+        if (this.version == version) {
+            routes.put(key(u, v), new ArrayList<>(route));
+        }
+    }
+
+    /**
+     * Get the largest number of routes the cache keeps.
+     *
+     * @return int
+     */
+    public int capacity() {
+        return capacity;
+    }
+
+    /**
+     * Get the number of routes in the cache.
+     *
+     * @return int
+     */
+    public synchronized int size() {
+        return routes.size();
+    }
+
+    /**
+     * Get the number of lookups that found a route.
+     *
+     * @return long
+     */
+    public synchronized long hits() {
+        return hits;
+    }
+
+    /**
+     * Get the number of lookups that did not find a route.
+     *
+     * @return long
+     */
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * Get the number of routes evicted to make room for others.
+     *
+     * @return long
+     */
+    public synchronized long evictions() {
+        return evictions;
+    }
+
+    /**
+     * Get the number of times the cache was emptied because the graph had changed.
+     *
+     * @return long
+     */
+    public synchronized long invalidations() {
+        return invalidations;
+    }
+
+    //Drop every route if the graph has changed since the cache last saw it.
+    private void update(long version) {
+        if (version > this.version) {
+            if (!routes.isEmpty()) {
+                routes.clear();
+                invalidations++;
+            }
+            this.version = version;
+        }
+    }
+
+    private static Long key(Vertex u, Vertex v) {
+        return ((long) u.getKey() << 32) | (v.getKey() & 0xFFFFFFFFL);
+    }
+}
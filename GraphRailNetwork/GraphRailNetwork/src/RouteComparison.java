@@ -0,0 +1,64 @@
+import java.util.ArrayList;
+
+/**
+ * The result of comparing route searches between the same two stations: the shortest route by
+ * distance, and how many vertices each search had to settle to find its answer. A* and Dijkstra
+ * both find a shortest route by distance; breadth-first search finds a most direct route.
+ */
+public class RouteComparison {
+    private final ArrayList<Edge> route;
+    private final int aStarSettled;
+    private final int dijkstraSettled;
+    private final int breadthFirstSettled;
+
+    /**
+     * Construct a comparison result.
+     *
+     * @param route               the route found by A*, or null if there is none
+     * @param aStarSettled        vertices settled by A*
+     * @param dijkstraSettled     vertices settled by Dijkstra's algorithm
+     * @param breadthFirstSettled vertices taken off the queue by breadth-first search
+     */
+    public RouteComparison(ArrayList<Edge> route, int aStarSettled, int dijkstraSettled, int breadthFirstSettled) {
+        this.route = route;
+        this.aStarSettled = aStarSettled;
+        this.dijkstraSettled = dijkstraSettled;
+        this.breadthFirstSettled = breadthFirstSettled;
+    }
+
+    /**
+     * Get the shortest route found by A*, or null if the stations are not connected.
+     *
+     * @return ArrayList<Edge>
+     */
+    public ArrayList<Edge> getRoute() {
+        return route;
+    }
+
+    /**
+     * Get the number of vertices settled by A*.
+     *
+     * @return int
+     */
+    public int getAStarSettled() {
+        return aStarSettled;
+    }
+
+    /**
+     * Get the number of vertices settled by Dijkstra's algorithm.
+     *
+     * @return int
+     */
+    public int getDijkstraSettled() {
+        return dijkstraSettled;
+    }
+
+    /**
+     * Get the number of vertices taken off the queue by breadth-first search.
+     *
+     * @return int
+     */
+    public int getBreadthFirstSettled() {
+        return breadthFirstSettled;
+    }
+}
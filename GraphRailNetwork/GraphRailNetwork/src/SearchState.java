@@ -0,0 +1,138 @@
+import java.util.Arrays;
+
+/**
+ * Scratch arrays for a search over a CompactGraph, keyed by vertex index. The arrays are kept
+ * between searches and only grow, so a search does not allocate anything per vertex.
+ *
+ * Instead of clearing the arrays before each search, every search gets a new epoch number and a
+ * vertex counts as reached only if its stamp equals the current epoch. Starting a search is
+ * therefore O(1) rather than O(|V|).
+ */
+public class SearchState {
+    private int[] stamp = new int[0];      // epoch in which each vertex was last reached
+    private int[] prevVertex = new int[0]; // vertex each vertex was reached from, or -1
+    private int[] prevEdge = new int[0];   // edge each vertex was reached along, or -1
+    private int[] hops = new int[0];       // number of edges followed to reach each vertex
+    private double[] cost = new double[0]; // cost of the best route found to each vertex
+    private final IndexedMinHeap heap = new IndexedMinHeap();
+    private int[] queue = new int[0];
+    private int epoch = 0;
+
+    /**
+     * Start a new search over a graph with n vertices. All vertices become unreached.
+     *
+     * @param n the number of vertices
+     */
+    public void begin(int n) {
+        if (stamp.length < n) {
+            int capacity = Math.max(n, stamp.length + (stamp.length >> 1));
+            stamp = new int[capacity];
+            prevVertex = new int[capacity];
+            prevEdge = new int[capacity];
+            hops = new int[capacity];
+            cost = new double[capacity];
+            queue = new int[capacity];
+            epoch = 0;
+        }
+        heap.ensureCapacity(n);
+        heap.clear();
+        //When the epoch wraps around, old stamps could match again, so clear them once.
+        if (++epoch == 0) {
+            Arrays.fill(stamp, 0);
+            epoch = 1;
+        }
+    }
+
+    /**
+     * Check whether vertex i has been reached in the current search.
+     *
+     * @param i a vertex index
+     * @return boolean
+     */
+    public boolean isReached(int i) {
+        return stamp[i] == epoch;
+    }
+
+    /**
+     * Mark vertex i as reached from vertex p along edge e. Use -1 for both at the start vertex.
+     * The number of hops to i is one more than the number to p.
+     *
+     * @param i a vertex index
+     * @param p the previous vertex index
+     * @param e the index of the edge followed
+     */
+    public void reach(int i, int p, int e) {
+        stamp[i] = epoch;
+        prevVertex[i] = p;
+        prevEdge[i] = e;
+        hops[i] = p < 0 ? 0 : hops[p] + 1;
+    }
+
+    /**
+     * Get the number of edges followed to reach vertex i from the start vertex.
+     *
+     * @param i a reached vertex index
+     * @return int
+     */
+    public int hops(int i) {
+        return hops[i];
+    }
+
+    /**
+     * Get the vertex that vertex i was reached from, or -1 for the start vertex.
+     *
+     * @param i a reached vertex index
+     * @return int
+     */
+    public int prevVertex(int i) {
+        return prevVertex[i];
+    }
+
+    /**
+     * Get the edge that vertex i was reached along, or -1 for the start vertex.
+     *
+     * @param i a reached vertex index
+     * @return int
+     */
+    public int prevEdge(int i) {
+        return prevEdge[i];
+    }
+
+    /**
+     * Get the cost of the best route found so far to vertex i, as set by setCost.
+     *
+     * @param i a reached vertex index
+     * @return double
+     */
+    public double cost(int i) {
+        return cost[i];
+    }
+
+    /**
+     * Record the cost of the best route found so far to vertex i.
+     *
+     * @param i a vertex index
+     * @param c the cost
+     */
+    public void setCost(int i, double c) {
+        cost[i] = c;
+    }
+
+    /**
+     * Get the priority queue for weighted searches. It is empty at the start of each search.
+     *
+     * @return IndexedMinHeap
+     */
+    public IndexedMinHeap heap() {
+        return heap;
+    }
+
+    /**
+     * Get an int array with room for every vertex, for use as a queue.
+     *
+     * @return int[]
+     */
+    public int[] queue() {
+        return queue;
+    }
+}
@@ -0,0 +1,118 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The most direct routes from one vertex of a CompactGraph to every vertex reachable from it,
+ * found with a single breadth-first search. For each vertex it keeps the vertex and edge it was
+ * reached from and its number of hops from the source, in three int arrays, so the route to any
+ * destination can be read off in time proportional to its length, without searching again.
+ *
+ * A tree describes the graph as it was when it was built.
+ */
+public class ShortestPathTree {
+    private final CompactGraph graph;
+    private final int source;
+    private final int[] prevVertex; // vertex each vertex was reached from, or -1
+    private final int[] prevEdge;   // edge each vertex was reached along, or -1
+    private final int[] hops;       // hops from the source, or -1 if not reachable
+    private final int reachable;
+
+    /**
+     * Build the tree of most direct routes from the vertex with index source.
+     *
+     * @param graph  the snapshot
+     * @param source a vertex index
+     */
+    public ShortestPathTree(CompactGraph graph, int source) {
+        this.graph = graph;
+        this.source = source;
+        int n = graph.vertexCount();
+        prevVertex = new int[n];
+        prevEdge = new int[n];
+        hops = new int[n];
+        Arrays.fill(hops, -1);
+
+        int[] queue = new int[n];
+        int head = 0;
+        int tail = 0;
+        hops[source] = 0;
+        prevVertex[source] = -1;
+        prevEdge[source] = -1;
+        queue[tail++] = source;
+        while (head < tail) {
+            int current = queue[head++];
+            for (int arc = graph.firstArc(current); arc < graph.endArc(current); arc++) {
+                int next = graph.target(arc);
+                if (hops[next] < 0) {
+                    hops[next] = hops[current] + 1;
+                    prevVertex[next] = current;
+                    prevEdge[next] = graph.edgeId(arc);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        reachable = tail;
+    }
+
+    /**
+     * Get the vertex the routes start from.
+     *
+     * @return Vertex
+     */
+    public Vertex source() {
+        return graph.vertex(source);
+    }
+
+    /**
+     * Get the number of vertices reachable from the source, including the source itself.
+     *
+     * @return int
+     */
+    public int reachableCount() {
+        return reachable;
+    }
+
+    /**
+     * Get the number of hops on a most direct route from the source to v.
+     *
+     * @param v a vertex
+     * @return the number of hops, or -1 if v cannot be reached or is not part of the snapshot
+     */
+    public int hops(Vertex v) {
+        int i = graph.indexOf(v);
+        return i < 0 ? -1 : hops[i];
+    }
+
+    /**
+     * Get the vertex before v on the most direct route from the source to v.
+     *
+     * @param v a vertex
+     * @return the previous vertex, or null if v is the source, cannot be reached or is not part
+     * of the snapshot
+     */
+    public Vertex previous(Vertex v) {
+        int i = graph.indexOf(v);
+        return i < 0 || hops[i] <= 0 ? null : graph.vertex(prevVertex[i]);
+    }
+
+    /**
+     * Get a most direct route from the source to v.
+     *
+     * @param v end vertex
+     * @return an ArrayList of edges, or null if v cannot be reached or is not part of the snapshot
+     */
+    public ArrayList<Edge> routeTo(Vertex v) {
+        int i = graph.indexOf(v);
+        if (i < 0 || hops[i] < 0) {
+            return null;
+        }
+
+        //Fill the route in from the end, so it does not need reversing.
+        Edge[] route = new Edge[hops[i]];
+        for (int position = route.length - 1; position >= 0; position--) {
+            route[position] = graph.edge(prevEdge[i]);
+            i = prevVertex[i];
+        }
+        return new ArrayList<>(Arrays.asList(route));
+    }
+}
@@ -0,0 +1,369 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Writes a graph snapshot in the format described in GraphSnapshot one vertex and edge at a time,
+ * without building a Graph first, so that networks larger than the Java heap can be made for a
+ * MappedGraph to search. GraphSnapshot.write needs the whole graph on the heap; this needs only a
+ * few buffers and the names used most recently.
+ *
+ * Vertices and edges are numbered from 0 in the order they are added, and edges are given by the
+ * numbers of their end vertices. Until the writer is closed they are appended to temporary files
+ * beside the snapshot, as the sizes of the sections are not known before then. Closing puts the
+ * snapshot together: the file is mapped into memory in chunks of 1GB, the sections are copied into
+ * place from the temporary files, and the CSR offsets and arcs are filled in with two passes over
+ * the edges, counting the degrees into the offsets section and then placing each arc straight into
+ * its slot. Each vertex's incidence sequence lists its edges in the order they were added. The
+ * temporary files are deleted once the snapshot is written, or if writing it fails.
+ *
+ * GraphSnapshot.write stores each distinct name once. A writer would need every name on the heap
+ * to do that, so it only remembers the last 65536 distinct names used, and a name used again
+ * after that is stored again. Rail networks reuse line names close together, so this still
+ * catches nearly all of them.
+ */
+public class SnapshotWriter implements Closeable {
+    private static final int RECENT_NAMES = 1 << 16;
+    private static final int CHUNK_BITS = 30;
+    private static final long CHUNK_BYTES = 1L << CHUNK_BITS;
+
+    private final Path file;
+    private final Path nameFile;
+    private final Path vertexFile;
+    private final Path edgeFile;
+    private final DataOutputStream names;    // each new name: int length, then its UTF-8 bytes
+    private final DataOutputStream vertices; // each vertex: int name, double latitude, double longitude
+    private final DataOutputStream edges;    // each edge: int u, int v, int name, double travel time, double distance
+    private final LinkedHashMap<String, Integer> recentNames;
+    private int vertexCount;
+    private int edgeCount;
+    private int stringCount;
+    private long stringBytes;
+    private long arcCount;
+    private boolean closed;
+    private ByteBuffer[] chunks; // the snapshot, while it is being put together
+
+    /**
+     * Start writing a snapshot to the given file, which is created or overwritten when the writer
+     * is closed.
+     *
+     * @param file the file to write
+     * @throws IOException if the temporary files cannot be created
+     */
+    public SnapshotWriter(Path file) throws IOException {
+        this.file = file;
+        Path directory = file.toAbsolutePath().getParent();
+        nameFile = Files.createTempFile(directory, "names", ".tmp");
+        vertexFile = Files.createTempFile(directory, "vertices", ".tmp");
+        edgeFile = Files.createTempFile(directory, "edges", ".tmp");
+        names = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(nameFile), 1 << 16));
+        vertices = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(vertexFile), 1 << 16));
+        edges = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(edgeFile), 1 << 16));
+        //Access order keeps the least recently used name first, ready to be forgotten.
+        recentNames = new LinkedHashMap<String, Integer>(1 << 10, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+                return size() > RECENT_NAMES;
+            }
+        };
+    }
+
+    /**
+     * Add a vertex with no location.
+     *
+     * @param n the name of the vertex
+     * @return the number of the vertex
+     * @throws IOException if it cannot be written
+     */
+    public int addVertex(String n) throws IOException {
+        return addVertex(n, Double.NaN, Double.NaN);
+    }
+
+    /**
+     * Add a vertex at the given location.
+     *
+     * @param n   the name of the vertex
+     * @param lat latitude in degrees, or NaN if not known
+     * @param lon longitude in degrees, or NaN if not known
+     * @return the number of the vertex
+     * @throws IOException if it cannot be written, or there are already 2^31 - 1 vertices
+     */
+    public int addVertex(String n, double lat, double lon) throws IOException {
+        requireOpen();
+        if (vertexCount == Integer.MAX_VALUE) {
+            throw new IOException("A snapshot cannot hold more than " + Integer.MAX_VALUE + " vertices");
+        }
+        vertices.writeInt(id(n));
+        vertices.writeDouble(lat);
+        vertices.writeDouble(lon);
+        return vertexCount++;
+    }
+
+    /**
+     * Add an edge between two vertices already added, with travel time and distance 1.
+     *
+     * @param u the number of a vertex
+     * @param v the number of a vertex
+     * @param n the name of the edge
+     * @return the number of the edge
+     * @throws IOException if it cannot be written
+     */
+    public int addEdge(int u, int v, String n) throws IOException {
+        return addEdge(u, v, n, 1, 1);
+    }
+
+    /**
+     * Add an edge between two vertices already added.
+     *
+     * @param u          the number of a vertex
+     * @param v          the number of a vertex
+     * @param n          the name of the edge
+     * @param travelTime the time it takes to travel along the edge, not negative
+     * @param distance   the length of the edge, not negative
+     * @return the number of the edge
+     * @throws IOException if it cannot be written, or there are already 2^31 - 1 edges
+     */
+    public int addEdge(int u, int v, String n, double travelTime, double distance) throws IOException {
+        requireOpen();
+        if (u < 0 || u >= vertexCount || v < 0 || v >= vertexCount) {
+            throw new IllegalArgumentException("No vertex " + (u < 0 || u >= vertexCount ? u : v) + " has been added");
+        }
+        if (!(travelTime >= 0)) {
+            throw new IllegalArgumentException("travel time must not be negative: " + travelTime);
+        }
+        if (!(distance >= 0)) {
+            throw new IllegalArgumentException("distance must not be negative: " + distance);
+        }
+        if (edgeCount == Integer.MAX_VALUE) {
+            throw new IOException("A snapshot cannot hold more than " + Integer.MAX_VALUE + " edges");
+        }
+        edges.writeInt(u);
+        edges.writeInt(v);
+        edges.writeInt(id(n));
+        edges.writeDouble(travelTime);
+        edges.writeDouble(distance);
+        arcCount += u == v ? 1 : 2;
+        return edgeCount++;
+    }
+
+    /**
+     * Get the number of vertices added so far.
+     *
+     * @return int
+     */
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    /**
+     * Get the number of edges added so far.
+     *
+     * @return int
+     */
+    public int edgeCount() {
+        return edgeCount;
+    }
+
+    /**
+     * Put the snapshot together from everything added, and delete the temporary files. Nothing
+     * more can be added afterwards. Closing a writer again does nothing.
+     *
+     * @throws IOException if the snapshot cannot be written, or the names take up more than 2GB
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            names.close();
+            vertices.close();
+            edges.close();
+            if (stringBytes > Integer.MAX_VALUE) {
+                throw new IOException("Names take up too much space to save: " + stringBytes + " bytes");
+            }
+            assemble();
+        } finally {
+            chunks = null;
+            Files.deleteIfExists(nameFile);
+            Files.deleteIfExists(vertexFile);
+            Files.deleteIfExists(edgeFile);
+        }
+    }
+
+    private void assemble() throws IOException {
+        long n = vertexCount;
+        long m = edgeCount;
+        long stringStarts = GraphSnapshot.HEADER_BYTES;
+        long stringData = stringStarts + (stringCount + 1L) * Integer.BYTES;
+        long vertexNames = stringData + stringBytes;
+        long latitudes = vertexNames + n * Integer.BYTES;
+        long longitudes = latitudes + n * Double.BYTES;
+        long offsets = longitudes + n * Double.BYTES;
+        long edgeU = offsets + (n + 1) * Long.BYTES;
+        long edgeV = edgeU + m * Integer.BYTES;
+        long edgeNames = edgeV + m * Integer.BYTES;
+        long travelTimes = edgeNames + m * Integer.BYTES;
+        long distances = travelTimes + m * Double.BYTES;
+        long targets = distances + m * Double.BYTES;
+        long arcEdges = targets + arcCount * Integer.BYTES;
+        long size = arcEdges + arcCount * Integer.BYTES;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            //Mapping past the end grows the file, and the new bytes are all 0. Each chunk also
+            //maps the first few bytes of the next, so a number starting in it can be put whole.
+            chunks = new ByteBuffer[(int) ((size + CHUNK_BYTES - 1) >>> CHUNK_BITS)];
+            for (int c = 0; c < chunks.length; c++) {
+                long start = (long) c << CHUNK_BITS;
+                chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, start, Math.min(CHUNK_BYTES + Long.BYTES, size - start));
+            }
+
+            putInt(0, GraphSnapshot.MAGIC);
+            putInt(Integer.BYTES, GraphSnapshot.FORMAT_VERSION);
+            putInt(2 * Integer.BYTES, vertexCount);
+            putInt(3 * Integer.BYTES, edgeCount);
+            putInt(4 * Integer.BYTES, stringCount);
+            putInt(5 * Integer.BYTES, (int) stringBytes);
+
+            try (DataInputStream in = open(nameFile)) {
+                int start = 0;
+                byte[] bytes = new byte[64];
+                for (int s = 0; s < stringCount; s++) {
+                    putInt(stringStarts + (long) s * Integer.BYTES, start);
+                    int length = in.readInt();
+                    if (length > bytes.length) {
+                        bytes = new byte[Math.max(length, bytes.length * 2)];
+                    }
+                    in.readFully(bytes, 0, length);
+                    for (int b = 0; b < length; b++) {
+                        putByte(stringData + start + b, bytes[b]);
+                    }
+                    start += length;
+                }
+                putInt(stringStarts + (long) stringCount * Integer.BYTES, start);
+            }
+
+            try (DataInputStream in = open(vertexFile)) {
+                for (long i = 0; i < n; i++) {
+                    putInt(vertexNames + i * Integer.BYTES, in.readInt());
+                    putDouble(latitudes + i * Double.BYTES, in.readDouble());
+                    putDouble(longitudes + i * Double.BYTES, in.readDouble());
+                }
+            }
+
+            //Copy the edges, counting each vertex's degree into the offset after its own.
+            try (DataInputStream in = open(edgeFile)) {
+                for (long e = 0; e < m; e++) {
+                    int u = in.readInt();
+                    int v = in.readInt();
+                    putInt(edgeU + e * Integer.BYTES, u);
+                    putInt(edgeV + e * Integer.BYTES, v);
+                    putInt(edgeNames + e * Integer.BYTES, in.readInt());
+                    putDouble(travelTimes + e * Double.BYTES, in.readDouble());
+                    putDouble(distances + e * Double.BYTES, in.readDouble());
+                    addLong(offsets + (u + 1L) * Long.BYTES, 1);
+                    if (u != v) {
+                        addLong(offsets + (v + 1L) * Long.BYTES, 1);
+                    }
+                }
+            }
+            for (long i = 1; i <= n; i++) {
+                addLong(offsets + i * Long.BYTES, getLong(offsets + (i - 1) * Long.BYTES));
+            }
+
+            //Place the arcs, using each vertex's offset as the slot for its next arc. That leaves
+            //every offset moved along to the next vertex's, so they are moved back afterwards.
+            for (long e = 0; e < m; e++) {
+                int u = getInt(edgeU + e * Integer.BYTES);
+                int v = getInt(edgeV + e * Integer.BYTES);
+                placeArc(offsets + u * (long) Long.BYTES, targets, arcEdges, v, (int) e);
+                if (u != v) {
+                    placeArc(offsets + v * (long) Long.BYTES, targets, arcEdges, u, (int) e);
+                }
+            }
+            for (long i = n; i > 0; i--) {
+                putLong(offsets + i * Long.BYTES, getLong(offsets + (i - 1) * Long.BYTES));
+            }
+            putLong(offsets, 0);
+        }
+    }
+
+    private void placeArc(long offset, long targets, long arcEdges, int target, int edge) {
+        long arc = getLong(offset);
+        putInt(targets + arc * Integer.BYTES, target);
+        putInt(arcEdges + arc * Integer.BYTES, edge);
+        putLong(offset, arc + 1);
+    }
+
+    //The number of a name, storing it if it has not been used recently. Null names are -1.
+    private int id(String name) throws IOException {
+        if (name == null) {
+            return -1;
+        }
+        Integer id = recentNames.get(name);
+        if (id == null) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            names.writeInt(bytes.length);
+            names.write(bytes);
+            stringBytes += bytes.length;
+            id = stringCount++;
+            recentNames.put(name, id);
+        }
+        return id;
+    }
+
+    private void requireOpen() {
+        if (closed) {
+            throw new IllegalStateException("The snapshot has already been written: " + file);
+        }
+    }
+
+    private static DataInputStream open(Path temporary) throws IOException {
+        return new DataInputStream(new BufferedInputStream(Files.newInputStream(temporary), 1 << 16));
+    }
+
+    private ByteBuffer chunk(long position) {
+        return chunks[(int) (position >>> CHUNK_BITS)];
+    }
+
+    private void putByte(long position, byte value) {
+        chunk(position).put((int) (position & (CHUNK_BYTES - 1)), value);
+    }
+
+    private void putInt(long position, int value) {
+        chunk(position).putInt((int) (position & (CHUNK_BYTES - 1)), value);
+    }
+
+    private int getInt(long position) {
+        return chunk(position).getInt((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    private void putLong(long position, long value) {
+        chunk(position).putLong((int) (position & (CHUNK_BYTES - 1)), value);
+    }
+
+    private long getLong(long position) {
+        return chunk(position).getLong((int) (position & (CHUNK_BYTES - 1)));
+    }
+
+    private void addLong(long position, long value) {
+        putLong(position, getLong(position) + value);
+    }
+
+    private void putDouble(long position, double value) {
+        chunk(position).putDouble((int) (position & (CHUNK_BYTES - 1)), value);
+    }
+}
@@ -0,0 +1,95 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * The result of a breadth-first traversal of a whole graph: every vertex in the order visited,
+ * together with the boundaries between the connected components. Each component is a
+ * contiguous run of the visiting order, starting with the vertex its traversal began from.
+ */
+public class Traversal {
+    private final CompactGraph graph;
+    private final int[] order;  // vertex indices in the order visited
+    private final int[] starts; // position in order where each component begins, then |V|
+
+    /**
+     * Construct a traversal result.
+     *
+     * @param graph  the snapshot that was traversed
+     * @param order  vertex indices in the order visited
+     * @param starts the position in order where each component begins, followed by the
+     *               number of vertices
+     */
+    public Traversal(CompactGraph graph, int[] order, int[] starts) {
+        this.graph = graph;
+        this.order = order;
+        this.starts = starts;
+    }
+
+    /**
+     * Get the number of vertices visited.
+     *
+     * @return int
+     */
+    public int size() {
+        return order.length;
+    }
+
+    /**
+     * Get the number of connected components.
+     *
+     * @return int
+     */
+    public int componentCount() {
+        return starts.length - 1;
+    }
+
+    /**
+     * Get the position in the visiting order where component c begins.
+     *
+     * @param c a component number
+     * @return int
+     */
+    public int componentStart(int c) {
+        return starts[c];
+    }
+
+    /**
+     * Get the position in the visiting order one past the end of component c.
+     *
+     * @param c a component number
+     * @return int
+     */
+    public int componentEnd(int c) {
+        return starts[c + 1];
+    }
+
+    /**
+     * Get the vertex at position i of the visiting order.
+     *
+     * @param i a position
+     * @return Vertex
+     */
+    public Vertex vertex(int i) {
+        return graph.vertex(order[i]);
+    }
+
+    /**
+     * Get every vertex in the order visited.
+     *
+     * @return ArrayList<Vertex>
+     */
+    public ArrayList<Vertex> vertices() {
+        return graph.toVertices(order, order.length);
+    }
+
+    /**
+     * Get the vertices of component c in the order visited.
+     *
+     * @param c a component number
+     * @return ArrayList<Vertex>
+     */
+    public ArrayList<Vertex> component(int c) {
+        int[] part = Arrays.copyOfRange(order, starts[c], starts[c + 1]);
+        return graph.toVertices(part, part.length);
+    }
+}
@@ -1,4 +1,5 @@
 import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Represents graph vertices.
@@ -7,10 +8,14 @@ import java.util.ArrayList;
  * @version 2021
  */
 public class Vertex {
+    private static final AtomicInteger nextKey = new AtomicInteger(); // source of unique vertex keys
+    private static final int VIEW_KEY = -1; // the key of every view, never given to a real vertex
+
+    private final int key; // never changes, unlike the index below
     private String name;
     private ArrayList<Edge> incidenceSeq; // for this implementation we will store incident edges in an ArrayList
-    private String label = null; // need a place to store if this vertex has been visited or not
-    private Edge followed = null;
+    private int index = -1; // position of this vertex in its graph's vertex list, or -1 if not in a graph
+    private double latitude = Double.NaN, longitude = Double.NaN; // in degrees; NaN if not known
 
     /**
      * Construct a new vertex
@@ -18,10 +23,33 @@ public class Vertex {
      * @param name the name of the vertex
      */
     public Vertex(String name) {
+        int k = nextKey.getAndIncrement();
+        //Keys are only unique until the counter wraps, but must never be taken for a view's.
+        key = k == VIEW_KEY ? nextKey.getAndIncrement() : k;
         this.name = name;
         incidenceSeq = new ArrayList<Edge>(); // initialise the list that will hold this vertex's incident edges
     }
     
+    /**
+     * Construct a view: a vertex that stands for one whose data is kept elsewhere, such as in an
+     * ArrayGraph or MappedGraph. It has no name or incidence sequence of its own, so a subclass
+     * using this constructor must override every method that reads them. A view does not use up
+     * a key, so views can be made in any number, and a Graph will not take one.
+     */
+    protected Vertex() {
+        key = VIEW_KEY;
+    }
+
+    /**
+     * Check whether this is a view of a vertex kept elsewhere, made with the no-argument
+     * constructor. Views cannot be put in a Graph, or have edges added to or removed from them.
+     *
+     * @return boolean
+     */
+    protected final boolean isView() {
+        return key == VIEW_KEY;
+    }
+
     /**
      * Get the name of the vertex
      * 
@@ -40,6 +68,75 @@ public class Vertex {
         name = n;
     }
 
+    /**
+     * Check whether the geographic location of the vertex is known.
+     *
+     * @return true or false
+     */
+    public boolean hasLocation() {
+        return !Double.isNaN(latitude) && !Double.isNaN(longitude);
+    }
+
+    /**
+     * Get the latitude of the vertex in degrees, or NaN if it is not known.
+     *
+     * @return double
+     */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /**
+     * Get the longitude of the vertex in degrees, or NaN if it is not known.
+     *
+     * @return double
+     */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Set the geographic location of the vertex. Use Graph.locate for a vertex in a graph, so
+     * that the graph's route searches see the change.
+     *
+     * @param lat latitude in degrees
+     * @param lon longitude in degrees
+     */
+    protected void setLocation(double lat, double lon) {
+        latitude = lat;
+        longitude = lon;
+    }
+
+    /**
+     * Get the unique key of the vertex. Unlike the index, the key never changes, so it can be
+     * used to identify the vertex in hash indexes.
+     *
+     * @return int
+     */
+    protected int getKey() {
+        return key;
+    }
+
+    /**
+     * Get the position of the vertex in its graph's vertex list (0 to |V|-1). This is kept up
+     * to date by the graph and is used to key primitive arrays during graph traversal. Returns -1
+     * if the vertex is not in a graph.
+     *
+     * @return int
+     */
+    protected int getIndex() {
+        return index;
+    }
+
+    /**
+     * Set the position of the vertex in its graph's vertex list.
+     *
+     * @param i the index
+     */
+    protected void setIndex(int i) {
+        index = i;
+    }
+
     /**
      * Returns a list of edges incident to the vertex
      * @return ArrayList<Edge>
@@ -49,10 +146,22 @@ public class Vertex {
     }
     
     /**
-     * Adds an edge to the incidence sequence.
+     * Make room in the incidence sequence for n edges in all, so that adding them does not have
+     * to grow it again and again.
+     * @param n the number of edges
+     */
+    protected void reserveIncidentEdges(int n) {
+        incidenceSeq.ensureCapacity(n);
+    }
+
+    /**
+     * Adds an edge to the incidence sequence. The edge records its position in the sequence so
+     * that it can be removed again in constant time.
      * @param e an edge
      */
     public void addIncidentEdge(Edge e) {
+        requireReal();
+        e.setIndex(this, incidenceSeq.size());
         incidenceSeq.add(e);
     }
 
@@ -63,12 +172,22 @@ public class Vertex {
      * @return boolean
      */
     public boolean removeIncidentEdge(Edge e)
-    /* NB: the remove() operation on ArrayList has O(n) running time.
-     * To achieve O(1) runtime for edge removal (which is possible) we could have chosen something
-     * like a doubly-linked list to represent incidence sequences. You do NOT need to fix
-     * or optimise this, it is just worth noting and understanding this.
+    /* NB: the remove() operation on ArrayList has O(n) running time. Instead the edge knows its
+     * position in the sequence, and the last edge in the sequence is moved into the gap it leaves,
+     * giving O(1) removal. The order of the remaining edges may change as a result.
      */ {
-        return incidenceSeq.remove(e); 
+        requireReal();
+        int i = e.getIndex(this);
+        if (i < 0) {
+            return false;
+        }
+        Edge last = incidenceSeq.remove(incidenceSeq.size() - 1);
+        if (last != e) {
+            incidenceSeq.set(i, last);
+            last.setIndex(this, i);
+        }
+        e.setIndex(this, -1);
+        return true;
     }
     
     /**
@@ -78,49 +197,10 @@ public class Vertex {
     public int degree() {
         return incidenceSeq.size();
     }
-    
-    /**
-     * Mark a vertex as visited. This is used to keep track of visited 
-     * vertices during graph traversal.
-     */
-    protected void labelAsVisited() {
-        label = "visited";
-    }
-    
-    /**
-     * Check whether a vertex has been visited or not. Used during graph
-     * traversal.
-     * 
-     * @return true or false
-     */
-    protected boolean isVisited() {
-        return label != null;
-    }
-    
-    /**
-     * Set the 'followed edge'. This is used to record the edge that
-     * was traversed in order to reach the vertex in a BFS traversal.
-     * 
-     * @param f the edge traversed to reach vertex in a BFS traversal.
-     */
-    protected void setFollowed(Edge f) {
-        followed = f;
-    }
-    
-    /** Get the 'followed edge'. 
-     * 
-     * @return Edge
-     */
-    protected Edge getFollowed() {
-        return followed;
-    }
-    
-    /**
-     * 'Unvisit' a vertex. Used to reset the vertex to unvisited before carrying
-     * out graph traversal.
-     */
-    protected void unVisit() {
-        label = null;
-        followed = null;
+
+    private void requireReal() {
+        if (isView()) {
+            throw new IllegalArgumentException("Vertex " + getName() + " is a view, and its edges can only be changed through its own graph");
+        }
     }
 }
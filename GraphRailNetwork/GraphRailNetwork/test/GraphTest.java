@@ -1,7 +1,17 @@
 import org.junit.Assert;
 import org.junit.Test;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.Assert.fail;
 
@@ -29,6 +39,55 @@ public class GraphTest {
         //Check that the edges and vertices lists match
         Assert.assertTrue(edges.size() == graph.edges().size() && edges.containsAll(graph.edges()) && graph.edges().containsAll(edges));
         Assert.assertTrue(vertices.size() == graph.vertices().size() && vertices.containsAll(graph.vertices()) && graph.vertices().containsAll(vertices));
+
+        //Vertices and edges already in a graph are refused, and the graph they are in is left alone
+        Graph source = new Graph();
+        Vertex x = source.insertVertex("X");
+        Vertex y = source.insertVertex("Y");
+        Edge xy = source.insertEdge(x, y, "XY");
+        for (int attempt = 0; attempt < 4; attempt++) {
+            try {
+                if (attempt == 0) {
+                    new Graph(source.vertices(), source.edges());
+                } else if (attempt == 1) {
+                    new Graph(source.vertices(), new ArrayList<>());
+                } else if (attempt == 2) {
+                    //An edge may be new, but its ends must not be another graph's
+                    new Graph(new ArrayList<>(), new ArrayList<>(Collections.singletonList(new Edge(x, y, "Copy"))));
+                } else {
+                    Vertex z = new Vertex("Z");
+                    new Graph(new ArrayList<>(Arrays.asList(z, z)), new ArrayList<>());
+                }
+                fail();
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+            Assert.assertEquals(1, x.degree());
+            Assert.assertEquals(1, source.incidentEdges(x).size());
+            Assert.assertEquals(Arrays.asList(x, y), source.vertices());
+            Assert.assertEquals(Collections.singletonList(xy), source.edges());
+        }
+        source.removeEdge(xy);
+        Assert.assertFalse(source.areAdjacent(x, y));
+        Assert.assertEquals(0, y.degree());
+
+        //A refused list leaves its new vertices free to be used again
+        Vertex w = new Vertex("W");
+        try {
+            new Graph(new ArrayList<>(Arrays.asList(w, x)), new ArrayList<>());
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        Vertex v = new Vertex("V");
+        try {
+            new Graph(new ArrayList<>(Arrays.asList(w, v)), new ArrayList<>(Collections.singletonList(new Edge(w, new Vertex("U"), "WU"))));
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        Graph reused = new Graph(new ArrayList<>(Arrays.asList(v, w)), new ArrayList<>(Collections.singletonList(new Edge(v, w, "VW"))));
+        Assert.assertTrue(reused.areAdjacent(w, v));
     }
 
     /**
@@ -180,6 +239,76 @@ public class GraphTest {
         }
     }
 
+    /**
+     * Test the program.Graph.areAdjacent method with reversed, parallel and removed edges
+     */
+    @Test
+    public void areAdjacentUndirected() {
+        Graph graph = new Graph();
+        Vertex vertex = graph.insertVertex(randomString(15));
+        Vertex vertex1 = graph.insertVertex(randomString(15));
+        Vertex vertex2 = graph.insertVertex(randomString(15));
+
+        //Check that adjacency holds in both directions
+        Edge edge = graph.insertEdge(vertex, vertex1, randomString(15));
+        Assert.assertTrue(graph.areAdjacent(vertex, vertex1));
+        Assert.assertTrue(graph.areAdjacent(vertex1, vertex));
+        Assert.assertFalse(graph.areAdjacent(vertex, vertex2));
+
+        //Check that removing one of two parallel edges keeps the vertices adjacent
+        Edge edge1 = graph.insertEdge(vertex1, vertex, randomString(15));
+        graph.removeEdge(edge);
+        Assert.assertTrue(graph.areAdjacent(vertex, vertex1));
+        graph.removeEdge(edge1);
+        Assert.assertFalse(graph.areAdjacent(vertex, vertex1));
+
+        //Check that removing a vertex removes its adjacencies
+        graph.insertEdge(vertex2, vertex1, randomString(15));
+        graph.removeVertex(vertex2);
+        Assert.assertFalse(graph.areAdjacent(vertex1, vertex2));
+    }
+
+    /**
+     * Test the AdjacencyIndex class against a reference set
+     */
+    @Test
+    public void adjacencyIndex() {
+        Random random = new Random();
+        AdjacencyIndex index = new AdjacencyIndex();
+        HashMap<String, Integer> reference = new HashMap<>();
+
+        //Add and remove random pairs, keeping a count of each pair in the reference map
+        for (int i = 0; i < 5000; i++) {
+            int a = random.nextInt(40);
+            int b = random.nextInt(40);
+            String pair = Math.min(a, b) + "," + Math.max(a, b);
+            if (random.nextBoolean()) {
+                index.add(a, b);
+                reference.merge(pair, 1, Integer::sum);
+            } else {
+                Assert.assertEquals(reference.containsKey(pair), index.remove(b, a));
+                reference.computeIfPresent(pair, (k, count) -> count == 1 ? null : count - 1);
+            }
+            Assert.assertEquals(reference.size(), index.size());
+        }
+        for (int a = 0; a < 40; a++) {
+            for (int b = 0; b < 40; b++) {
+                Assert.assertEquals(reference.containsKey(Math.min(a, b) + "," + Math.max(a, b)), index.contains(a, b));
+            }
+        }
+
+        //Negative keys, as after the key counter wraps, do not collide with other pairs
+        AdjacencyIndex wrapped = new AdjacencyIndex();
+        wrapped.add(-1, 0);
+        wrapped.add(Integer.MIN_VALUE, -2);
+        Assert.assertTrue(wrapped.contains(0, -1));
+        Assert.assertTrue(wrapped.contains(-2, Integer.MIN_VALUE));
+        Assert.assertFalse(wrapped.contains(-1, 1));
+        Assert.assertFalse(wrapped.contains(-1, -1));
+        Assert.assertFalse(wrapped.contains(0, 0));
+        Assert.assertEquals(2, wrapped.size());
+    }
+
     /**
      * Test the program.Graph.areAdjacent and the program.Graph.getEdge methods
      */
@@ -219,6 +348,120 @@ public class GraphTest {
         }
     }
 
+    /**
+     * Test that incidence sequences follow edge and vertex removal
+     */
+    @Test
+    public void incidentEdgesAfterRemoval() {
+        ArrayList<Vertex> vertices = new ArrayList<>();
+        ArrayList<Edge> edges = new ArrayList<>();
+        Vertex a = new Vertex("a");
+        Vertex b = new Vertex("b");
+        Vertex c = new Vertex("c");
+        vertices.add(a);
+        vertices.add(b);
+        vertices.add(c);
+        Edge ab = new Edge(a, b, "ab");
+        Edge bc = new Edge(b, c, "bc");
+        edges.add(ab);
+        edges.add(bc);
+
+        //Check that the constructor builds the incidence sequences
+        Graph graph = new Graph(vertices, edges);
+        Assert.assertEquals(2, graph.incidentEdges(b).size());
+        //Check that asking again does not add duplicates
+        Assert.assertEquals(2, graph.incidentEdges(b).size());
+
+        //Check that removing an edge updates both end vertices
+        graph.removeEdge(ab);
+        Assert.assertEquals(0, graph.incidentEdges(a).size());
+        Assert.assertEquals(1, graph.incidentEdges(b).size());
+
+        //Check that removing a vertex removes its edges
+        Assert.assertEquals("c", graph.removeVertex(c));
+        Assert.assertEquals(0, graph.edges().size());
+        Assert.assertEquals(0, graph.incidentEdges(b).size());
+    }
+
+    /**
+     * Test that edges and vertices keep track of their positions as others are removed
+     */
+    @Test
+    public void removalPositions() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph
+        for (int i = 0; i < 30; i++) graph.insertVertex(randomString(10));
+        for (int i = 0; i < 100; i++) {
+            Vertex vertex = graph.vertices().get(random.nextInt(graph.vertices().size()));
+            Vertex vertex1 = graph.vertices().get(random.nextInt(graph.vertices().size()));
+            graph.insertEdge(vertex, vertex1, randomString(10));
+        }
+
+        //Remove random edges and vertices, checking every recorded position each time
+        for (int i = 0; i < 20; i++) {
+            Edge edge = graph.edges().get(random.nextInt(graph.edges().size()));
+            Assert.assertEquals(edge.getName(), graph.removeEdge(edge));
+            Assert.assertNull(graph.removeEdge(edge));
+            Vertex vertex = graph.vertices().get(random.nextInt(graph.vertices().size()));
+            Assert.assertEquals(vertex.getName(), graph.removeVertex(vertex));
+            Assert.assertNull(graph.removeVertex(vertex));
+
+            for (Vertex v : graph.vertices()) {
+                for (int j = 0; j < v.getIncidentEdges().size(); j++) {
+                    Assert.assertEquals(j, v.getIncidentEdges().get(j).getIndex(v));
+                }
+            }
+            for (Edge e : graph.edges()) {
+                Assert.assertTrue(graph.vertices().contains(e.getVertex_u()));
+                Assert.assertTrue(graph.vertices().contains(e.getVertex_v()));
+            }
+        }
+    }
+
+    /**
+     * Test the program.Graph.compact method
+     */
+    @Test
+    public void compact() {
+        ArrayList<Vertex> vertices = new ArrayList<>();
+        ArrayList<Edge> edges = new ArrayList<>();
+        Graph graph = new Graph(vertices,edges);
+
+        //Build a small graph with a self-loop and an isolated vertex
+        Vertex a = graph.insertVertex("a");
+        Vertex b = graph.insertVertex("b");
+        Vertex c = graph.insertVertex("c");
+        Vertex d = graph.insertVertex("d");
+        Edge ab = graph.insertEdge(a, b, "ab");
+        Edge bc = graph.insertEdge(b, c, "bc");
+        Edge cc = graph.insertEdge(c, c, "cc");
+
+        CompactGraph snapshot = graph.compact();
+        Assert.assertEquals(4, snapshot.vertexCount());
+        Assert.assertEquals(3, snapshot.edgeCount());
+        //Check the degrees, counting the self-loop once
+        Assert.assertEquals(1, snapshot.degree(snapshot.indexOf(a)));
+        Assert.assertEquals(2, snapshot.degree(snapshot.indexOf(b)));
+        Assert.assertEquals(2, snapshot.degree(snapshot.indexOf(c)));
+        Assert.assertEquals(0, snapshot.degree(snapshot.indexOf(d)));
+        //Check that the arcs of b follow the edge order
+        int arc = snapshot.firstArc(snapshot.indexOf(b));
+        Assert.assertEquals(a, snapshot.vertex(snapshot.target(arc)));
+        Assert.assertEquals(ab, snapshot.edge(snapshot.edgeId(arc)));
+        Assert.assertEquals(c, snapshot.vertex(snapshot.target(arc + 1)));
+        Assert.assertEquals(bc, snapshot.edge(snapshot.edgeId(arc + 1)));
+        Assert.assertEquals(cc, snapshot.edge(snapshot.edgeId(snapshot.firstArc(snapshot.indexOf(c)) + 1)));
+
+        //Check that the snapshot is rebuilt after the graph changes
+        Assert.assertSame(snapshot, graph.compact());
+        graph.removeVertex(d);
+        Assert.assertNotSame(snapshot, graph.compact());
+        Assert.assertEquals(-1, graph.compact().indexOf(d));
+        Assert.assertEquals(3, graph.compact().vertexCount());
+    }
+
     /**
      * Test the program.Graph.renameVertex method
      */
@@ -236,8 +479,8 @@ public class GraphTest {
             Vertex vertex = graph.insertVertex(name);
             //Check the name is set correctly
             Assert.assertEquals(name, vertex.getName());
-            //Rename the vertex
-            graph.rename(vertex, name1);
+            //Rename the vertex, which should give back the old name
+            Assert.assertEquals(name, graph.rename(vertex, name1));
             //Check the new name is correct
             Assert.assertEquals(name1, vertex.getName());
         }
@@ -263,8 +506,8 @@ public class GraphTest {
             Edge edge = graph.insertEdge(vertex, vertex1, name);
             //Check the name is set correctly
             Assert.assertEquals(name, edge.getName());
-            //Rename the edge
-            graph.rename(edge, name1);
+            //Rename the edge, which should give back the old name
+            Assert.assertEquals(name, graph.rename(edge, name1));
             //Check the new name is correct
             Assert.assertEquals(name1, edge.getName());
         }
@@ -305,6 +548,206 @@ public class GraphTest {
 //    }
 
 
+    /**
+     * Test the program.Graph.findVertex and program.Graph.findEdge methods
+     */
+    @Test
+    public void findByName() {
+        Graph graph = new Graph();
+        Vertex euston = graph.insertVertex("Euston");
+        Vertex camden = graph.insertVertex("Camden Town");
+        Vertex junction = graph.insertVertex("Junction");
+        Vertex junction1 = graph.insertVertex(new String("Junction"));
+        Edge northern = graph.insertEdge(euston, camden, "Northern");
+        Edge northern1 = graph.insertEdge(camden, junction, new String("Northern"));
+        Edge loop = graph.insertEdge(junction, junction1, "Loop");
+
+        //Look up unique and shared names, and check shared names are stored once
+        Assert.assertSame(euston, graph.findVertex("Euston"));
+        Assert.assertSame(junction, graph.findVertex("Junction"));
+        Assert.assertEquals(Arrays.asList(junction, junction1), graph.findVertices("Junction"));
+        Assert.assertSame(junction.getName(), junction1.getName());
+        Assert.assertEquals(Arrays.asList(northern, northern1), graph.findEdges("Northern"));
+        Assert.assertSame(northern.getName(), northern1.getName());
+        Assert.assertNull(graph.findVertex("Paddington"));
+        Assert.assertTrue(graph.findEdges("Central").isEmpty());
+
+        //Renaming moves an item to its new name
+        Assert.assertEquals("Junction", graph.rename(junction1, "Mornington Crescent"));
+        Assert.assertSame(junction1, graph.findVertex("Mornington Crescent"));
+        Assert.assertEquals(Collections.singletonList(junction), graph.findVertices("Junction"));
+        Assert.assertEquals("Loop", graph.rename(loop, "Northern"));
+        Assert.assertEquals(3, graph.findEdges("Northern").size());
+        Assert.assertNull(graph.findEdge("Loop"));
+
+        //Removing a vertex takes it and its edges out of the indexes
+        graph.removeVertex(junction);
+        Assert.assertNull(graph.findVertex("Junction"));
+        Assert.assertEquals(Collections.singletonList(northern), graph.findEdges("Northern"));
+        graph.removeEdge(northern);
+        Assert.assertNull(graph.findEdge("Northern"));
+        Assert.assertSame(camden, graph.findVertex("Camden Town"));
+
+        //A graph built from lists indexes them too
+        Vertex holborn = new Vertex("Holborn");
+        Vertex bank = new Vertex("Bank");
+        Edge central = new Edge(holborn, bank, "Central");
+        Graph built = new Graph(new ArrayList<>(Arrays.asList(holborn, bank)), new ArrayList<>(Collections.singletonList(central)));
+        Assert.assertSame(holborn, built.findVertex("Holborn"));
+        Assert.assertEquals(Collections.singletonList(central), built.findEdges("Central"));
+    }
+
+    /**
+     * Test the program.ArrayGraph class
+     */
+    @Test
+    public void arrayGraph() {
+        ArrayGraph graph = new ArrayGraph();
+        Vertex euston = graph.insertVertex("Euston");
+        Vertex camden = graph.insertVertex("Camden Town");
+        Vertex kentish = graph.insertVertex("Kentish Town");
+        Edge northern = graph.insertEdge(euston, camden, "Northern");
+        Edge northern1 = graph.insertEdge(camden, kentish, "Northern");
+        Edge loop = graph.insertEdge(kentish, kentish, "Loop");
+
+        //Views read through to the arrays, and compare equal rather than identical
+        Assert.assertEquals(3, graph.vertexCount());
+        Assert.assertEquals(3, graph.edgeCount());
+        Assert.assertEquals("Camden Town", camden.getName());
+        Assert.assertEquals(camden, graph.opposite(northern, euston));
+        Assert.assertEquals(euston, northern.getVertex_u());
+        Assert.assertNull(graph.opposite(northern, kentish));
+        Assert.assertTrue(graph.areAdjacent(camden, euston));
+        Assert.assertFalse(graph.areAdjacent(euston, kentish));
+        Assert.assertTrue(graph.areAdjacent(kentish, kentish));
+        Assert.assertEquals(2, camden.degree());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(northern, northern1)), new HashSet<>(graph.incidentEdges(camden)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(northern1, loop)), new HashSet<>(kentish.getIncidentEdges()));
+        Assert.assertEquals(1, northern1.getIndex(kentish));
+        Assert.assertEquals(0, loop.getIndex(kentish));
+        Assert.assertEquals(-1, northern1.getIndex(euston));
+        Assert.assertEquals(Arrays.asList(euston, camden, kentish), graph.bfTraverse(euston));
+
+        //Renaming returns the old name
+        Assert.assertEquals("Euston", graph.rename(euston, "Euston Square"));
+        Assert.assertEquals("Euston Square", euston.getName());
+        Assert.assertEquals("Loop", graph.rename(loop, "Siding"));
+        Assert.assertEquals("Siding", loop.getName());
+
+        //Removing a vertex removes its edges, and views of them go stale even once the slots are reused
+        Assert.assertEquals("Camden Town", graph.removeVertex(camden));
+        Assert.assertEquals(2, graph.vertexCount());
+        Assert.assertEquals(Collections.singletonList(loop), graph.edges());
+        Assert.assertNull(camden.getName());
+        Assert.assertNull(northern.getName());
+        Assert.assertEquals(0, euston.degree());
+        Assert.assertNull(graph.removeEdge(northern));
+        Assert.assertNull(graph.removeVertex(camden));
+        Vertex mornington = graph.insertVertex("Mornington Crescent");
+        Assert.assertNotEquals(camden, mornington);
+        Assert.assertNull(graph.insertEdge(camden, euston, "Northern"));
+        Edge reused = graph.insertEdge(mornington, euston, "Northern");
+        Assert.assertNotEquals(northern, reused);
+        Assert.assertFalse(graph.areAdjacent(camden, euston));
+        Assert.assertTrue(graph.areAdjacent(mornington, euston));
+
+        //Views of one graph are not part of another
+        Assert.assertNull(new ArrayGraph().removeVertex(euston));
+        Assert.assertFalse(graph.areAdjacent(new Vertex("Euston"), euston));
+
+        //Views use no vertex keys, and a Graph will not take them or have their edges changed
+        int before = new Vertex("Before").getKey();
+        for (int i = 0; i < 1000; i++) {
+            graph.vertices();
+        }
+        Assert.assertEquals(before + 1, new Vertex("After").getKey());
+        Graph plain = new Graph();
+        Vertex holborn = plain.insertVertex("Holborn");
+        try {
+            plain.insertEdge(holborn, euston, "Central");
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        Assert.assertTrue(plain.edges().isEmpty());
+        Assert.assertEquals(0, holborn.degree());
+        try {
+            new Graph(new ArrayList<>(graph.vertices()), new ArrayList<>());
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            euston.addIncidentEdge(reused);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+
+        //Changes the arrays have nowhere to keep are refused, not kept in the view and lost
+        try {
+            euston.setLocation(51.5, -0.1);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+        Assert.assertFalse(graph.vertices().get(0).hasLocation());
+        try {
+            reused.setTravelTime(5);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+        Assert.assertEquals(1, reused.getTravelTime(), 0);
+
+        //Random changes leave it matching a Graph given the same changes
+        Random random = new Random(22);
+        ArrayGraph array = new ArrayGraph();
+        Graph reference = new Graph();
+        ArrayList<Vertex> arrayVertices = new ArrayList<>();
+        ArrayList<Vertex> referenceVertices = new ArrayList<>();
+        ArrayList<Edge> arrayEdges = new ArrayList<>();
+        ArrayList<Edge> referenceEdges = new ArrayList<>();
+        for (int step = 0; step < 3000; step++) {
+            int choice = random.nextInt(10);
+            if (choice < 3 || arrayVertices.size() < 2) {
+                String name = "V" + step;
+                arrayVertices.add(array.insertVertex(name));
+                referenceVertices.add(reference.insertVertex(name));
+            } else if (choice < 7) {
+                int a = random.nextInt(arrayVertices.size());
+                int b = random.nextInt(arrayVertices.size());
+                String name = "E" + step;
+                arrayEdges.add(array.insertEdge(arrayVertices.get(a), arrayVertices.get(b), name));
+                referenceEdges.add(reference.insertEdge(referenceVertices.get(a), referenceVertices.get(b), name));
+            } else if (choice < 9 && !arrayEdges.isEmpty()) {
+                int e = random.nextInt(arrayEdges.size());
+                Assert.assertEquals(reference.removeEdge(referenceEdges.remove(e)), array.removeEdge(arrayEdges.remove(e)));
+            } else {
+                int i = random.nextInt(arrayVertices.size());
+                Assert.assertEquals(reference.removeVertex(referenceVertices.remove(i)), array.removeVertex(arrayVertices.remove(i)));
+                for (int e = arrayEdges.size() - 1; e >= 0; e--) {
+                    //Removed edges are cut off from their end vertices
+                    if (referenceEdges.get(e).getVertex_u() == null) {
+                        referenceEdges.remove(e);
+                        arrayEdges.remove(e);
+                    }
+                }
+            }
+        }
+        Assert.assertEquals(reference.vertices().size(), array.vertexCount());
+        Assert.assertEquals(reference.edges().size(), array.edgeCount());
+        for (int i = 0; i < arrayVertices.size(); i++) {
+            Vertex v = arrayVertices.get(i);
+            Vertex w = referenceVertices.get(i);
+            Assert.assertEquals(w.getName(), v.getName());
+            Assert.assertEquals(w.degree(), v.degree());
+            int j = random.nextInt(arrayVertices.size());
+            Assert.assertEquals(reference.areAdjacent(w, referenceVertices.get(j)), array.areAdjacent(v, arrayVertices.get(j)));
+            Assert.assertEquals(reference.bfTraverse(w).size(), array.bfTraverse(v).size());
+        }
+    }
+
     /**
      * Test the program.Graph.allReachable method
      */
@@ -336,6 +779,493 @@ public class GraphTest {
         }
     }
 
+    /**
+     * Test the ParallelBreadthFirstSearch class against a sequential search
+     */
+    @Test
+    public void allReachableParallel() {
+        Random random = new Random();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        //Build a large, sparse random graph so that both search directions get used
+        Graph graph = new Graph();
+        for (int i = 0; i < 20000; i++) graph.insertVertex("v" + i);
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 30000; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), "e" + i);
+        }
+
+        for (int query = 0; query < 5; query++) {
+            Vertex vertex = vertices.get(random.nextInt(vertices.size()));
+            HashMap<Vertex, Integer> hops = hopCounts(graph, vertex);
+
+            //Force the parallel search, then check it finds the same vertices level by level
+            CompactGraph snapshot = graph.compact();
+            int[] reached = new ParallelBreadthFirstSearch(snapshot, pool, 0).reachable(snapshot.indexOf(vertex));
+            Assert.assertEquals(hops.size(), reached.length);
+            Assert.assertEquals(hops.size(), new HashSet<>(snapshot.toVertices(reached, reached.length)).size());
+            for (int i = 1; i < reached.length; i++) {
+                Assert.assertTrue(hops.get(snapshot.vertex(reached[i - 1])) <= hops.get(snapshot.vertex(reached[i])));
+            }
+
+            //Check the graph method, which stays sequential for a graph this small
+            Assert.assertEquals(new HashSet<>(graph.allReachable(vertex)), new HashSet<>(graph.allReachable(vertex, pool)));
+            ArrayList<Vertex> traversal = graph.bfTraverse(vertex, pool);
+            Assert.assertEquals(vertex, traversal.get(0));
+            Assert.assertEquals(hops.size(), traversal.size());
+            for (int i = 1; i < traversal.size(); i++) {
+                Assert.assertTrue(hops.get(traversal.get(i - 1)) <= hops.get(traversal.get(i)));
+            }
+        }
+        pool.shutdown();
+    }
+
+    /**
+     * Test the program.Graph.hopMatrix method, on the heap and in a file
+     */
+    @Test
+    public void hopMatrix() throws Exception {
+        Random random = new Random();
+        ForkJoinPool pool = new ForkJoinPool(4);
+
+        //Build a random graph with a long line of stations on the side, so that the line needs
+        //wider entries than the rest
+        Graph graph = new Graph();
+        for (int i = 0; i < 100; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 130; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(100)), vertices.get(random.nextInt(100)), randomString(10));
+        }
+        HopMatrix small = graph.hopMatrix(pool);
+        Assert.assertEquals(1, small.bytesPerEntry());
+        Vertex end = graph.insertVertex(randomString(10));
+        for (int i = 0; i < 200; i++) {
+            Vertex next = graph.insertVertex(randomString(10));
+            graph.insertEdge(end, next, randomString(10));
+            end = next;
+        }
+
+        Path file = Files.createTempFile("hops", ".bin");
+        HopMatrix[] matrices = {graph.hopMatrix(pool), graph.hopMatrix(pool, file)};
+        for (HopMatrix matrix : matrices) {
+            Assert.assertEquals(2, matrix.bytesPerEntry());
+            Assert.assertEquals(vertices.size(), matrix.size());
+
+            //Check every entry against a breadth-first search
+            for (Vertex from : vertices) {
+                HashMap<Vertex, Integer> hops = hopCounts(graph, from);
+                for (Vertex to : vertices) {
+                    Assert.assertEquals((int) hops.getOrDefault(to, -1), matrix.hops(from, to));
+                }
+            }
+        }
+        Assert.assertEquals((long) vertices.size() * vertices.size() * 2, Files.size(file));
+        pool.shutdown();
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test the program.Graph.save and program.Graph.load methods
+     */
+    @Test
+    public void saveLoad() throws Exception {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph with shared names, some locations and weights, then remove a few
+        //vertices and edges so that the lists are shuffled
+        for (int i = 0; i < 60; i++) {
+            String name = i % 7 == 0 ? "Junction" : randomString(10) + "\u00e9";
+            if (i % 3 == 0) graph.insertVertex(name);
+            else graph.insertVertex(name, random.nextDouble() * 90, random.nextDouble() * 180 - 90);
+        }
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 120; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())),
+                    i % 5 == 0 ? "Main line" : randomString(10), random.nextInt(50), random.nextDouble() * 20);
+        }
+        for (int i = 0; i < 5; i++) graph.removeVertex(vertices.get(random.nextInt(vertices.size())));
+        for (int i = 0; i < 10; i++) graph.removeEdge(graph.edges().get(random.nextInt(graph.edges().size())));
+
+        Path file = Files.createTempFile("graph", ".bin");
+        graph.save(file);
+        Graph loaded = Graph.load(file);
+
+        //Check everything comes back in the same order
+        Assert.assertEquals(graph.vertices().size(), loaded.vertices().size());
+        Assert.assertEquals(graph.edges().size(), loaded.edges().size());
+        for (int i = 0; i < graph.vertices().size(); i++) {
+            Vertex before = graph.vertices().get(i), after = loaded.vertices().get(i);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(before.hasLocation(), after.hasLocation());
+            Assert.assertEquals(before.getLatitude(), after.getLatitude(), 0);
+            Assert.assertEquals(before.getLongitude(), after.getLongitude(), 0);
+            Assert.assertEquals(before.degree(), after.degree());
+        }
+        for (int i = 0; i < graph.edges().size(); i++) {
+            Edge before = graph.edges().get(i), after = loaded.edges().get(i);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(graph.vertices().indexOf(before.getVertex_u()), loaded.vertices().indexOf(after.getVertex_u()));
+            Assert.assertEquals(graph.vertices().indexOf(before.getVertex_v()), loaded.vertices().indexOf(after.getVertex_v()));
+            Assert.assertEquals(before.getTravelTime(), after.getTravelTime(), 0);
+            Assert.assertEquals(before.getDistance(), after.getDistance(), 0);
+        }
+
+        //Names used more than once are loaded as one string, and the graph works as before
+        Edge first = null;
+        for (Edge edge : loaded.edges()) {
+            if (edge.getName().equals("Main line")) {
+                if (first == null) first = edge;
+                else Assert.assertSame(first.getName(), edge.getName());
+            }
+        }
+        Assert.assertEquals(graph.componentCount(), loaded.componentCount());
+        Vertex from = loaded.vertices().get(0);
+        HashMap<Vertex, Integer> hops = hopCounts(loaded, from);
+        for (Vertex to : loaded.vertices()) {
+            ArrayList<Edge> route = loaded.mostDirectRoute(from, to);
+            Assert.assertEquals(hops.containsKey(to) ? hops.get(to) : null, route == null ? null : route.size());
+        }
+
+        //A file that is not a snapshot is rejected
+        Files.write(file, "from,to,name".getBytes());
+        try {
+            Graph.load(file);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+
+        //So is one whose header gives sizes far bigger than the file, without allocating them
+        int[][] headers = {{0, 0, Integer.MAX_VALUE, 0}, {0x7ffffff0, 0, 0, 0}, {0, 0x7ffffff0, 0, 0}, {0, 0, 0, Integer.MAX_VALUE}};
+        for (int[] header : headers) {
+            ByteBuffer bytes = ByteBuffer.allocate(64);
+            bytes.putInt(0x47524E53).putInt(2);
+            for (int size : header) bytes.putInt(size);
+            Files.write(file, bytes.array());
+            try {
+                Graph.load(file);
+                fail();
+            } catch (IOException e) {
+                //expected
+            }
+        }
+
+        //And so is one whose offsets do not start at 0, go down, or do not add up to the edges
+        graph.save(file);
+        byte[] saved = Files.readAllBytes(file);
+        ByteBuffer header = ByteBuffer.wrap(saved);
+        int n = header.getInt(8);
+        int offsets = 24 + (header.getInt(16) + 1) * 4 + header.getInt(20) + n * 20;
+        long[][] corruptions = {{0, 1}, {1, 1L << 40}, {n, header.getLong(offsets + n * 8) + 2}};
+        for (long[] corruption : corruptions) {
+            ByteBuffer bytes = ByteBuffer.wrap(saved.clone());
+            bytes.putLong(offsets + (int) corruption[0] * 8, corruption[1]);
+            Files.write(file, bytes.array());
+            try {
+                Graph.load(file);
+                fail();
+            } catch (IOException e) {
+                Assert.assertTrue(e.getMessage().startsWith("Corrupt graph snapshot"));
+            }
+        }
+
+        //Only the current version of the format is read
+        ByteBuffer older = ByteBuffer.wrap(saved.clone());
+        older.putInt(4, GraphSnapshot.FORMAT_VERSION - 1);
+        Files.write(file, older.array());
+        try {
+            Graph.load(file);
+            fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Unsupported graph snapshot version"));
+        }
+        try {
+            MappedGraph.open(file);
+            fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Unsupported graph snapshot version"));
+        }
+        Files.write(file, saved);
+        Assert.assertEquals(graph.edges().size(), Graph.load(file).edges().size());
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test the program.SnapshotWriter class
+     */
+    @Test
+    public void snapshotWriter() throws Exception {
+        //Write a random network straight to a file, and build the same one as a Graph
+        Random random = new Random(19);
+        Path directory = Files.createTempDirectory("snapshot");
+        Path file = directory.resolve("graph.bin");
+        Graph graph = new Graph();
+        ArrayList<Vertex> vertices = new ArrayList<>();
+        try (SnapshotWriter writer = new SnapshotWriter(file)) {
+            for (int step = 0; step < 400; step++) {
+                if (vertices.size() < 2 || random.nextInt(3) == 0) {
+                    String name = vertices.size() % 9 == 0 ? "Junction" : randomString(8);
+                    if (step % 2 == 0) {
+                        Assert.assertEquals(vertices.size(), writer.addVertex(name));
+                        vertices.add(graph.insertVertex(name));
+                    } else {
+                        double lat = random.nextDouble() * 90, lon = random.nextDouble() * 180 - 90;
+                        Assert.assertEquals(vertices.size(), writer.addVertex(name, lat, lon));
+                        vertices.add(graph.insertVertex(name, lat, lon));
+                    }
+                } else {
+                    int u = random.nextInt(vertices.size());
+                    int v = random.nextInt(10) == 0 ? u : random.nextInt(vertices.size());
+                    String name = step % 4 == 0 ? "Main line" : randomString(8);
+                    int travelTime = random.nextInt(50);
+                    Assert.assertEquals(graph.edges().size(), writer.addEdge(u, v, name, travelTime, 2));
+                    graph.insertEdge(vertices.get(u), vertices.get(v), name, travelTime, 2);
+                }
+            }
+            Assert.assertEquals(graph.edges().size(), writer.edgeCount());
+
+            //Edges must join vertices already added, and weights cannot be negative
+            try {
+                writer.addEdge(0, vertices.size(), "Nowhere");
+                fail();
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+            try {
+                writer.addEdge(0, 1, "Back in time", -1, 1);
+                fail();
+            } catch (IllegalArgumentException e) {
+                //expected
+            }
+        }
+
+        //The temporary files are gone, and the file loads as the same graph
+        try (Stream<Path> files = Files.list(directory)) {
+            Assert.assertEquals(Collections.singletonList(file), files.collect(Collectors.toList()));
+        }
+        Graph loaded = Graph.load(file);
+        Assert.assertEquals(graph.vertices().size(), loaded.vertices().size());
+        Assert.assertEquals(graph.edges().size(), loaded.edges().size());
+        for (int i = 0; i < vertices.size(); i++) {
+            Vertex before = vertices.get(i), after = loaded.vertices().get(i);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(before.hasLocation(), after.hasLocation());
+            Assert.assertEquals(before.getLatitude(), after.getLatitude(), 0);
+            Assert.assertEquals(before.degree(), after.degree());
+        }
+        String mainLine = null;
+        for (int e = 0; e < graph.edges().size(); e++) {
+            Edge before = graph.edges().get(e), after = loaded.edges().get(e);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(vertices.indexOf(before.getVertex_u()), loaded.vertices().indexOf(after.getVertex_u()));
+            Assert.assertEquals(vertices.indexOf(before.getVertex_v()), loaded.vertices().indexOf(after.getVertex_v()));
+            Assert.assertEquals(before.getTravelTime(), after.getTravelTime(), 0);
+            if (after.getName().equals("Main line")) {
+                if (mainLine == null) mainLine = after.getName();
+                else Assert.assertSame(mainLine, after.getName());
+            }
+        }
+
+        //Mapped, every incidence sequence lists the edges in the order they were added
+        MappedGraph mapped = MappedGraph.open(file);
+        ArrayList<Vertex> mappedVertices = mapped.vertices();
+        ArrayList<Edge> mappedEdges = mapped.edges();
+        for (int i = 0; i < vertices.size(); i++) {
+            ArrayList<Edge> expected = graph.incidentEdges(vertices.get(i));
+            ArrayList<Edge> actual = mapped.incidentEdges(mappedVertices.get(i));
+            Assert.assertEquals(expected.size(), actual.size());
+            for (int k = 0; k < expected.size(); k++) {
+                Assert.assertEquals(mappedEdges.get(graph.edges().indexOf(expected.get(k))), actual.get(k));
+            }
+            int j = random.nextInt(vertices.size());
+            Assert.assertEquals(graph.areAdjacent(vertices.get(i), vertices.get(j)), mapped.areAdjacent(mappedVertices.get(i), mappedVertices.get(j)));
+        }
+
+        //Nothing can be added once it is written
+        SnapshotWriter writer = new SnapshotWriter(file);
+        writer.close();
+        try {
+            writer.addVertex("Late");
+            fail();
+        } catch (IllegalStateException e) {
+            //expected
+        }
+        Assert.assertEquals(0, Graph.load(file).vertices().size());
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(directory);
+    }
+
+    /**
+     * Test the program.MappedGraph class
+     */
+    @Test
+    public void mappedGraph() throws Exception {
+        Random random = new Random(23);
+        Graph graph = new Graph();
+        for (int i = 0; i < 80; i++) {
+            String name = i % 9 == 0 ? "Junction" : randomString(10);
+            if (i % 2 == 0) graph.insertVertex(name);
+            else graph.insertVertex(name, random.nextDouble() * 90, random.nextDouble() * 180 - 90);
+        }
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 100; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())),
+                    randomString(10), random.nextInt(50), random.nextDouble() * 20);
+        }
+        graph.removeVertex(vertices.get(3));
+        vertices = graph.vertices();
+        ArrayList<Edge> edges = graph.edges();
+
+        Path file = Files.createTempFile("graph", ".bin");
+        graph.save(file);
+        MappedGraph mapped = MappedGraph.open(file);
+
+        //Everything reads back from the file as it was saved
+        Assert.assertEquals(vertices.size(), mapped.vertexCount());
+        Assert.assertEquals(edges.size(), mapped.edgeCount());
+        ArrayList<Vertex> mappedVertices = mapped.vertices();
+        ArrayList<Edge> mappedEdges = mapped.edges();
+        for (int i = 0; i < vertices.size(); i++) {
+            Vertex before = vertices.get(i), after = mappedVertices.get(i);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(before.hasLocation(), after.hasLocation());
+            Assert.assertEquals(before.getLatitude(), after.getLatitude(), 0);
+            Assert.assertEquals(before.degree(), after.degree());
+            ArrayList<Edge> incident = mapped.incidentEdges(after);
+            for (int j = 0; j < incident.size(); j++) {
+                Assert.assertEquals(before.getIncidentEdges().get(j).getName(), incident.get(j).getName());
+                Assert.assertEquals(j, incident.get(j).getIndex(after));
+            }
+            int other = random.nextInt(vertices.size());
+            Assert.assertEquals(graph.areAdjacent(before, vertices.get(other)), mapped.areAdjacent(after, mappedVertices.get(other)));
+            ArrayList<Vertex> order = mapped.bfTraverse(after);
+            ArrayList<Vertex> expected = graph.bfTraverse(before);
+            Assert.assertEquals(after, order.get(0));
+            HashSet<Integer> reached = new HashSet<>();
+            for (Vertex vertex : order) reached.add(mappedVertices.indexOf(vertex));
+            for (Vertex vertex : expected) Assert.assertTrue(reached.contains(vertices.indexOf(vertex)));
+            Assert.assertEquals(expected.size(), order.size());
+        }
+        for (int e = 0; e < edges.size(); e++) {
+            Edge before = edges.get(e), after = mappedEdges.get(e);
+            Assert.assertEquals(before.getName(), after.getName());
+            Assert.assertEquals(mappedVertices.get(vertices.indexOf(before.getVertex_u())), after.getVertex_u());
+            Assert.assertEquals(mappedVertices.get(vertices.indexOf(before.getVertex_v())), mapped.opposite(after, after.getVertex_u()));
+            Assert.assertEquals(before.getTravelTime(), after.getTravelTime(), 0);
+            Assert.assertEquals(before.getDistance(), after.getDistance(), 0);
+        }
+
+        //Vertices and edges can be looked up by number
+        Assert.assertEquals(mappedVertices.get(5), mapped.vertex(5));
+        Assert.assertEquals(mappedEdges.get(7), mapped.edge(7));
+        Assert.assertNull(mapped.vertex(-1));
+        Assert.assertNull(mapped.vertex(mappedVertices.size()));
+        Assert.assertNull(mapped.edge(mappedEdges.size()));
+
+        //Views of other graphs are not part of it, and its views cannot be put in a Graph
+        Assert.assertFalse(mapped.areAdjacent(vertices.get(0), mappedVertices.get(0)));
+        Assert.assertTrue(mapped.incidentEdges(vertices.get(0)).isEmpty());
+        try {
+            mappedVertices.get(0).setName("Siding");
+            fail();
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+        try {
+            mappedEdges.get(0).setDistance(3);
+            fail();
+        } catch (UnsupportedOperationException e) {
+            //expected
+        }
+        try {
+            new Graph().insertEdge(vertices.get(0), mappedVertices.get(1), "Siding");
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        try {
+            new Graph(new ArrayList<>(), new ArrayList<>(mappedEdges));
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+        Files.deleteIfExists(file);
+    }
+
+    /**
+     * Test the program.Graph.loadEdgeList method
+     */
+    @Test
+    public void loadEdgeList() throws Exception {
+        //Build a CSV file with a header, comments, quoted names and weights
+        Path file = Files.createTempFile("edges", ".csv");
+        Files.write(file, Arrays.asList(
+                "from,to,name,weight",
+                "# Northern line",
+                "Euston,Camden Town,Northern",
+                "Camden Town,Kentish Town,Northern,2.5",
+                "",
+                "\"King's Cross, St Pancras\",Euston,\"The \"\"Tube\"\"\"",
+                "Euston,Euston,Loop"));
+        Graph graph = Graph.loadEdgeList(file);
+
+        Assert.assertEquals(4, graph.vertices().size());
+        Assert.assertEquals(4, graph.edges().size());
+        Vertex euston = graph.vertices().get(0);
+        Vertex kingsCross = graph.vertices().get(3);
+        Assert.assertEquals("Euston", euston.getName());
+        Assert.assertEquals("King's Cross, St Pancras", kingsCross.getName());
+        Assert.assertEquals("The \"Tube\"", graph.edges().get(2).getName());
+        Assert.assertEquals(2.5, graph.edges().get(1).getTravelTime(), 0);
+        Assert.assertSame(graph.edges().get(0).getName(), graph.edges().get(1).getName());
+        Assert.assertEquals(3, graph.incidentEdges(euston).size());
+        Assert.assertTrue(graph.areAdjacent(kingsCross, euston));
+        Assert.assertEquals(3, graph.mostDirectRoute(kingsCross, graph.vertices().get(2)).size());
+
+        //The same edges split at tabs
+        Path tabs = Files.createTempFile("edges", ".tsv");
+        Files.write(tabs, Arrays.asList("Euston\tCamden Town\tNorthern", "Camden Town\tKentish Town\tNorthern\t2.5"));
+        Assert.assertEquals(3, Graph.loadEdgeList(tabs).vertices().size());
+
+        //A header after comments is skipped, but a first station called From is not a header
+        Files.write(file, Arrays.asList("# Exported network", "", "From,To,Name", "Euston,Camden Town,Northern"));
+        Assert.assertEquals(1, Graph.loadEdgeList(file).edges().size());
+        Files.write(file, Arrays.asList("From,Euston,Northern", "Euston,Camden Town,Northern"));
+        Graph from = Graph.loadEdgeList(file);
+        Assert.assertEquals(2, from.edges().size());
+        Assert.assertNotNull(from.findVertex("From"));
+
+        //Spaces around fields, quoted or not, are ignored, so each station is made once
+        Files.write(file, Arrays.asList(" from , to , name ", "Euston, Camden Town, Northern , 2", "Camden Town ,  \"Kentish Town\" ,Northern"));
+        Graph spaced = Graph.loadEdgeList(file);
+        Assert.assertEquals(3, spaced.vertices().size());
+        Assert.assertEquals(2, spaced.edges().size());
+        Assert.assertEquals(Arrays.asList("Euston", "Camden Town", "Kentish Town"), Arrays.asList(spaced.vertices().get(0).getName(),
+                spaced.vertices().get(1).getName(), spaced.vertices().get(2).getName()));
+        Assert.assertEquals(2, spaced.findVertex("Camden Town").degree());
+        Assert.assertEquals(2, spaced.edges().get(0).getTravelTime(), 0);
+        Assert.assertEquals(2, spaced.findEdges("Northern").size());
+
+        //Lines that cannot be understood are rejected
+        Files.write(file, Arrays.asList("Euston,Camden Town,Northern", "Euston,Camden Town"));
+        try {
+            Graph.loadEdgeList(file);
+            fail();
+        } catch (IOException e) {
+            Assert.assertTrue(e.getMessage().startsWith("Line 2"));
+        }
+        Files.write(file, Arrays.asList("Euston,Camden Town,Northern,soon"));
+        try {
+            Graph.loadEdgeList(file);
+            fail();
+        } catch (IOException e) {
+            //expected
+        }
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(tabs);
+    }
+
     /**
      * Test the program.Graph.allConnected method
      */
@@ -368,6 +1298,42 @@ public class GraphTest {
         Assert.assertFalse(graph.allConnected());
     }
 
+    /**
+     * Test the program.Graph component methods as the graph is built up and taken apart
+     */
+    @Test
+    public void components() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        for (int i = 0; i < 40; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int step = 0; step < 200; step++) {
+            //Mostly insert edges, but sometimes remove edges or vertices, or add vertices
+            int action = random.nextInt(10);
+            if (action < 6 || graph.edges().isEmpty()) {
+                graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+            } else if (action < 8) {
+                graph.removeEdge(graph.edges().get(random.nextInt(graph.edges().size())));
+            } else if (action < 9 && vertices.size() > 2) {
+                graph.removeVertex(vertices.get(random.nextInt(vertices.size())));
+            } else {
+                graph.insertVertex(randomString(10));
+            }
+
+            //Check the components against plain breadth-first searches
+            Vertex vertex = vertices.get(random.nextInt(vertices.size()));
+            HashMap<Vertex, Integer> reachable = hopCounts(graph, vertex);
+            Assert.assertEquals(reachable.size(), graph.componentSize(vertex));
+            for (Vertex other : vertices) {
+                Assert.assertEquals(reachable.containsKey(other), graph.sameComponent(vertex, other));
+                Assert.assertEquals(reachable.containsKey(other), graph.componentOf(vertex) == graph.componentOf(other));
+            }
+            Assert.assertEquals(graph.bfForest().componentCount(), graph.componentCount());
+            Assert.assertEquals(graph.componentCount() == 1, graph.allConnected());
+        }
+    }
+
     /**
      * Test the program.Graph.mostDirectRoute method
      */
@@ -468,6 +1434,544 @@ public class GraphTest {
         Assert.assertEquals(expected, actual);
     }
 
+    /**
+     * Test the program.Graph.mostDirectRoute method over many queries on a growing graph
+     */
+    @Test
+    public void mostDirectRouteRepeated() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a line of stations, growing it between queries
+        ArrayList<Vertex> line = new ArrayList<>();
+        line.add(graph.insertVertex(randomString(10)));
+        Vertex island = graph.insertVertex(randomString(10));
+        for (int i = 0; i < 200; i++) {
+            Vertex vertex = graph.insertVertex(randomString(10));
+            graph.insertEdge(line.get(line.size() - 1), vertex, randomString(10));
+            line.add(vertex);
+
+            //Check that the route between two random stations follows the line
+            int from = random.nextInt(line.size());
+            int to = random.nextInt(line.size());
+            ArrayList<Edge> route = graph.mostDirectRoute(line.get(from), line.get(to));
+            Assert.assertEquals(Math.abs(from - to), route.size());
+            //Check that the island cannot be reached
+            Assert.assertNull(graph.mostDirectRoute(line.get(from), island));
+        }
+    }
+
+    /**
+     * Test that program.Graph.mostDirectRoute finds valid routes of the shortest length on
+     * random graphs
+     */
+    @Test
+    public void mostDirectRouteRandom() {
+        Random random = new Random();
+
+        for (int trial = 0; trial < 20; trial++) {
+            //Build a sparse random graph, so that some pairs are not connected
+            Graph graph = new Graph();
+            for (int i = 0; i < 60; i++) graph.insertVertex(randomString(10));
+            ArrayList<Vertex> vertices = graph.vertices();
+            for (int i = 0; i < 70; i++) {
+                graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+            }
+
+            for (int query = 0; query < 20; query++) {
+                Vertex from = vertices.get(random.nextInt(vertices.size()));
+                Vertex to = vertices.get(random.nextInt(vertices.size()));
+                HashMap<Vertex, Integer> hops = hopCounts(graph, from);
+                ArrayList<Edge> route = graph.mostDirectRoute(from, to);
+
+                //Check that a route is found exactly when one exists, and that it is shortest
+                if (!hops.containsKey(to)) {
+                    Assert.assertNull(route);
+                    continue;
+                }
+                Assert.assertEquals((int) hops.get(to), route.size());
+                //Check that the edges join up from start to end
+                Vertex current = from;
+                for (Edge edge : route) {
+                    Assert.assertTrue(edge.getVertex_u() == current || edge.getVertex_v() == current);
+                    current = graph.opposite(edge, current);
+                }
+                Assert.assertEquals(to, current);
+            }
+        }
+    }
+
+    /**
+     * Test that several threads can query the same graph at once
+     */
+    @Test
+    public void concurrentQueries() throws Exception {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph and work out the expected answers on one thread
+        for (int i = 0; i < 200; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 300; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+        }
+        HashMap<Vertex, HashMap<Vertex, Integer>> hops = new HashMap<>();
+        for (Vertex vertex : vertices) hops.put(vertex, hopCounts(graph, vertex));
+
+        //Run routes and reachability queries from several threads and check every answer
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        ArrayList<Future<?>> results = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            results.add(pool.submit(() -> {
+                Random local = new Random();
+                for (int query = 0; query < 500; query++) {
+                    Vertex from = vertices.get(local.nextInt(vertices.size()));
+                    Vertex to = vertices.get(local.nextInt(vertices.size()));
+                    Integer expected = hops.get(from).get(to);
+                    ArrayList<Edge> route = graph.mostDirectRoute(from, to);
+                    Assert.assertEquals(expected, route == null ? null : route.size());
+                    Assert.assertEquals(hops.get(from).size(), graph.allReachable(from).size());
+                }
+                return null;
+            }));
+        }
+        for (Future<?> result : results) result.get();
+        pool.shutdown();
+    }
+
+    /**
+     * Test the program.Graph.mostDirectRoute method with the route cache turned on
+     */
+    @Test
+    public void mostDirectRouteCache() {
+        Graph graph = new Graph();
+        Vertex a = graph.insertVertex("A");
+        Vertex b = graph.insertVertex("B");
+        Vertex c = graph.insertVertex("C");
+        Vertex d = graph.insertVertex("D");
+        graph.insertEdge(a, b, "AB");
+        graph.insertEdge(b, c, "BC");
+        graph.insertEdge(c, d, "CD");
+        graph.useRouteCache(2);
+        RouteCache cache = graph.routeCache();
+
+        //The first query misses, and the second hits, even if the first result was changed
+        ArrayList<Edge> route = graph.mostDirectRoute(a, d);
+        Assert.assertEquals(3, route.size());
+        route.clear();
+        Assert.assertEquals(3, graph.mostDirectRoute(a, d).size());
+        Assert.assertEquals(1, cache.hits());
+        Assert.assertEquals(1, cache.misses());
+
+        //A third route evicts the least recently used one
+        graph.mostDirectRoute(a, c);
+        graph.mostDirectRoute(a, d);
+        graph.mostDirectRoute(b, d);
+        Assert.assertEquals(1, cache.evictions());
+        Assert.assertEquals(2, cache.size());
+        graph.mostDirectRoute(a, d);
+        Assert.assertEquals(3, cache.hits());
+
+        //Unreachable stations are not cached
+        Vertex island = graph.insertVertex("island");
+        Assert.assertNull(graph.mostDirectRoute(a, island));
+        Assert.assertNull(graph.mostDirectRoute(a, island));
+        Assert.assertEquals(3, cache.hits());
+
+        //The cache does not change the answer for null or stray vertices, or count them
+        long misses = cache.misses();
+        Assert.assertNull(graph.mostDirectRoute(null, d));
+        Assert.assertNull(graph.mostDirectRoute(a, null));
+        Assert.assertNull(graph.mostDirectRoute(new Vertex("A"), d));
+        Assert.assertEquals(misses, cache.misses());
+
+        //Adding an edge drops the cached routes, as adding the island did, so the new shorter
+        //route is found
+        graph.mostDirectRoute(a, d);
+        Edge shortcut = graph.insertEdge(a, d, "AD");
+        Assert.assertEquals(1, graph.mostDirectRoute(a, d).size());
+        Assert.assertEquals(2, cache.invalidations());
+        graph.removeEdge(shortcut);
+        Assert.assertEquals(3, graph.mostDirectRoute(a, d).size());
+
+        //Turning the cache off
+        graph.useRouteCache(0);
+        Assert.assertNull(graph.routeCache());
+        Assert.assertEquals(3, graph.mostDirectRoute(a, d).size());
+    }
+
+    /**
+     * Test the program.Graph.shortestPathTree method
+     */
+    @Test
+    public void shortestPathTree() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph with a few parallel edges and self-loops
+        for (int i = 0; i < 120; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 150; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+        }
+
+        for (int query = 0; query < 10; query++) {
+            Vertex from = vertices.get(random.nextInt(vertices.size()));
+            ShortestPathTree tree = graph.shortestPathTree(from);
+            HashMap<Vertex, Integer> hops = hopCounts(graph, from);
+            Assert.assertEquals(from, tree.source());
+            Assert.assertEquals(hops.size(), tree.reachableCount());
+            Assert.assertNull(tree.previous(from));
+
+            //Check the route to every station is as short as a breadth-first search finds, and joins up
+            for (Vertex to : vertices) {
+                ArrayList<Edge> route = tree.routeTo(to);
+                if (!hops.containsKey(to)) {
+                    Assert.assertNull(route);
+                    Assert.assertEquals(-1, tree.hops(to));
+                    continue;
+                }
+                Assert.assertEquals((int) hops.get(to), route.size());
+                Assert.assertEquals((int) hops.get(to), tree.hops(to));
+                Vertex current = from;
+                for (Edge edge : route) {
+                    Assert.assertTrue(edge.getVertex_u() == current || edge.getVertex_v() == current);
+                    current = graph.opposite(edge, current);
+                }
+                Assert.assertEquals(to, current);
+                if (to != from) Assert.assertEquals(graph.opposite(route.get(route.size() - 1), to), tree.previous(to));
+            }
+        }
+
+        //A vertex outside the graph has no tree
+        Assert.assertNull(graph.shortestPathTree(new Vertex("outside")));
+    }
+
+    /**
+     * Test the program.Graph.kShortestRoutes method against every loopless route
+     */
+    @Test
+    public void kShortestRoutes() {
+        Random random = new Random();
+
+        for (int round = 0; round < 20; round++) {
+            //Build a small random graph with a few parallel edges and self-loops
+            Graph graph = new Graph();
+            for (int i = 0; i < 10; i++) graph.insertVertex(randomString(10));
+            ArrayList<Vertex> vertices = graph.vertices();
+            for (int i = 0; i < 16; i++) {
+                graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+            }
+            Vertex from = vertices.get(random.nextInt(vertices.size()));
+            Vertex to = vertices.get(random.nextInt(vertices.size()));
+
+            //Find the length of every loopless route by trying them all
+            ArrayList<Integer> lengths = new ArrayList<>();
+            looplessRoutes(graph, from, to, new HashSet<>(), 0, lengths);
+            Collections.sort(lengths);
+
+            int k = 8;
+            List<ArrayList<Edge>> routes = graph.kShortestRoutes(from, to, k);
+            Assert.assertEquals(Math.min(k, lengths.size()), routes.size());
+            Assert.assertEquals(routes.size(), new HashSet<>(routes).size());
+            for (int i = 0; i < routes.size(); i++) {
+                //Check each route is as long as it should be, joins up and does not loop
+                ArrayList<Edge> route = routes.get(i);
+                Assert.assertEquals((int) lengths.get(i), route.size());
+                HashSet<Vertex> visited = new HashSet<>();
+                Vertex current = from;
+                visited.add(current);
+                for (Edge edge : route) {
+                    Assert.assertTrue(edge.getVertex_u() == current || edge.getVertex_v() == current);
+                    current = graph.opposite(edge, current);
+                    Assert.assertTrue(visited.add(current));
+                }
+                Assert.assertEquals(to, current);
+            }
+        }
+    }
+
+    /**
+     * Test the program.Graph.fastestRoute method
+     */
+    @Test
+    public void fastestRoute() {
+        Graph graph = new Graph();
+
+        //A direct but slow line from a to d, and a longer but faster one through b and c
+        Vertex a = graph.insertVertex("a");
+        Vertex b = graph.insertVertex("b");
+        Vertex c = graph.insertVertex("c");
+        Vertex d = graph.insertVertex("d");
+        Vertex e = graph.insertVertex("e");
+        Edge ad = graph.insertEdge(a, d, "ad", 10, 5);
+        Edge ab = graph.insertEdge(a, b, "ab", 2, 3);
+        Edge bc = graph.insertEdge(b, c, "bc", 2, 3);
+        Edge cd = graph.insertEdge(c, d, "cd", 2, 3);
+
+        //Check that the fastest and most direct routes differ
+        Assert.assertEquals(Arrays.asList(ab, bc, cd), graph.fastestRoute(a, d));
+        Assert.assertEquals(Arrays.asList(ad), graph.mostDirectRoute(a, d));
+        Assert.assertEquals(Arrays.asList(cd, bc, ab), graph.fastestRoute(d, a));
+        Assert.assertEquals(0, graph.fastestRoute(a, a).size());
+        Assert.assertNull(graph.fastestRoute(a, e));
+
+        //Check that slowing down the fast line is seen by the next search
+        Assert.assertEquals(2, graph.retime(bc, 20), 0);
+        Assert.assertEquals(Arrays.asList(ad), graph.fastestRoute(a, d));
+    }
+
+    /**
+     * Test the program.Graph.fastestRoute method against an all-pairs reference on random
+     * weighted graphs
+     */
+    @Test
+    public void fastestRouteRandom() {
+        Random random = new Random();
+        Graph graph = new Graph();
+        for (int i = 0; i < 40; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 100; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(40)), vertices.get(random.nextInt(40)), randomString(10), random.nextInt(20), 1);
+        }
+
+        //Work out every shortest travel time with Floyd-Warshall
+        double[][] time = new double[40][40];
+        for (double[] row : time) Arrays.fill(row, Double.POSITIVE_INFINITY);
+        for (int i = 0; i < 40; i++) time[i][i] = 0;
+        for (Edge edge : graph.edges()) {
+            int x = vertices.indexOf(edge.getVertex_u());
+            int y = vertices.indexOf(edge.getVertex_v());
+            time[x][y] = time[y][x] = Math.min(time[x][y], edge.getTravelTime());
+        }
+        for (int k = 0; k < 40; k++)
+            for (int i = 0; i < 40; i++)
+                for (int j = 0; j < 40; j++)
+                    time[i][j] = Math.min(time[i][j], time[i][k] + time[k][j]);
+
+        //Check that every route found has the shortest travel time
+        for (int i = 0; i < 40; i++) {
+            for (int j = 0; j < 40; j++) {
+                ArrayList<Edge> route = graph.fastestRoute(vertices.get(i), vertices.get(j));
+                if (time[i][j] == Double.POSITIVE_INFINITY) {
+                    Assert.assertNull(route);
+                } else {
+                    double total = 0;
+                    for (Edge edge : route) total += edge.getTravelTime();
+                    Assert.assertEquals(time[i][j], total, 0);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test the program.Graph.shortestRoute and program.Graph.compareRoutes methods on a grid of
+     * stations
+     */
+    @Test
+    public void shortestRouteGeographic() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Lay out a 30 by 30 grid of stations about 1km apart, with track a little longer than
+        //the straight line between neighbouring stations
+        Vertex[][] grid = new Vertex[30][30];
+        for (int i = 0; i < 30; i++) {
+            for (int j = 0; j < 30; j++) {
+                grid[i][j] = graph.insertVertex(i + "," + j, 51.0 + i * 0.009, -1.0 + j * 0.0143);
+                if (i > 0) connect(graph, grid[i - 1][j], grid[i][j], 1 + random.nextDouble() / 2);
+                if (j > 0) connect(graph, grid[i][j - 1], grid[i][j], 1 + random.nextDouble() / 2);
+            }
+        }
+
+        //Check that A* finds a route as short as Dijkstra's, while settling fewer vertices
+        RouteComparison comparison = graph.compareRoutes(grid[15][0], grid[15][29]);
+        double aStar = 0;
+        for (Edge edge : comparison.getRoute()) aStar += edge.getDistance();
+        double dijkstra = 0;
+        for (Edge edge : graph.fastestRoute(grid[15][0], grid[15][29])) dijkstra += edge.getDistance();
+        Assert.assertEquals(dijkstra, aStar, 1e-9);
+        Assert.assertEquals(comparison.getRoute(), graph.shortestRoute(grid[15][0], grid[15][29]));
+        Assert.assertTrue(comparison.getAStarSettled() < comparison.getDijkstraSettled());
+        Assert.assertTrue(comparison.getAStarSettled() < comparison.getBreadthFirstSettled());
+
+        //Check that an unreachable station gives no route
+        Vertex island = graph.insertVertex("island", 50.0, 0.0);
+        Assert.assertNull(graph.shortestRoute(grid[0][0], island));
+        Assert.assertNull(graph.compareRoutes(grid[0][0], island).getRoute());
+    }
+
+    /**
+     * Test the program.RailNetworkGenerator class
+     */
+    @Test
+    public void railNetworkGenerator() {
+        //Exactly the stations and segments asked for, however few or many
+        int[][] sizes = {{1, 0}, {2, 1}, {3, 5}, {10, 9}, {250, 260}, {5000, 6000}, {20000, 40000}};
+        for (int[] size : sizes) {
+            Graph graph = new RailNetworkGenerator(7, size[0], size[1]).generate();
+            Assert.assertEquals(size[0], graph.vertices().size());
+            Assert.assertEquals(size[1], graph.edges().size());
+        }
+
+        //The same seed gives the same network, and another seed a different one
+        Graph graph = new RailNetworkGenerator(25, 5000, 5600).generate();
+        Graph same = new RailNetworkGenerator(25, 5000, 5600).generate();
+        Graph other = new RailNetworkGenerator(26, 5000, 5600).generate();
+        for (int i = 0; i < graph.vertices().size(); i++) {
+            Vertex v = graph.vertices().get(i), w = same.vertices().get(i);
+            Assert.assertEquals(v.getName(), w.getName());
+            Assert.assertEquals(v.getLatitude(), w.getLatitude(), 0);
+            Assert.assertEquals(v.degree(), w.degree());
+        }
+        boolean differs = false;
+        for (int i = 0; i < graph.vertices().size(); i++) {
+            differs |= graph.vertices().get(i).getLatitude() != other.vertices().get(i).getLatitude();
+        }
+        Assert.assertTrue(differs);
+
+        //Nearly every station is on one network, with a few islands, hubs, termini and sidings
+        Vertex hub = graph.findVertex("Hub 0");
+        Assert.assertTrue(graph.componentSize(hub) >= 0.98 * graph.vertices().size());
+        Assert.assertTrue(graph.componentCount() > 1);
+        int termini = 0, junctions = 0;
+        for (Vertex v : graph.vertices()) {
+            if (v.degree() == 1) termini++;
+            if (v.degree() >= 3) junctions++;
+        }
+        Assert.assertTrue(termini > 0 && junctions > 0);
+        Assert.assertFalse(graph.findVertices("Siding 0").isEmpty());
+        Assert.assertTrue(graph.findEdges("Trunk 0").size() > 1);
+
+        //Distances are never shorter than the straight line, so A* finds routes no longer than
+        //any other
+        Random random = new Random(25);
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 20; i++) {
+            Vertex from = vertices.get(random.nextInt(vertices.size())), to = vertices.get(random.nextInt(vertices.size()));
+            ArrayList<Edge> shortest = graph.shortestRoute(from, to);
+            if (!graph.sameComponent(from, to)) {
+                Assert.assertNull(shortest);
+                continue;
+            }
+            double length = 0, fastest = 0, direct = 0;
+            for (Edge edge : shortest) length += edge.getDistance();
+            for (Edge edge : graph.fastestRoute(from, to)) fastest += edge.getDistance();
+            for (Edge edge : graph.mostDirectRoute(from, to)) direct += edge.getDistance();
+            Assert.assertTrue(length <= fastest + 1e-6 && length <= direct + 1e-6);
+        }
+
+        //A network can be added to an existing graph, and bad sizes are rejected
+        new RailNetworkGenerator(1, 100, 120).addTo(graph);
+        Assert.assertEquals(5100, graph.vertices().size());
+        try {
+            new RailNetworkGenerator(1, 100, 98);
+            fail();
+        } catch (IllegalArgumentException e) {
+            //expected
+        }
+    }
+
+    /**
+     * Test the program.Graph.mostDirectRoute method with landmarks turned on
+     */
+    @Test
+    public void mostDirectRouteLandmarks() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph where most stations have a location
+        for (int i = 0; i < 150; i++) {
+            if (i % 10 == 0) graph.insertVertex(randomString(10));
+            else graph.insertVertex(randomString(10), 50 + random.nextDouble() * 5, -5 + random.nextDouble() * 5);
+        }
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 200; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+        }
+
+        for (int round = 0; round < 4; round++) {
+            graph.useLandmarks(6, round % 2 == 1);
+            Landmarks landmarks = graph.landmarks();
+            Assert.assertEquals(6, landmarks.count());
+            Assert.assertSame(landmarks, graph.landmarks());
+
+            for (int query = 0; query < 100; query++) {
+                Vertex from = vertices.get(random.nextInt(vertices.size()));
+                Vertex to = vertices.get(random.nextInt(vertices.size()));
+                Integer hops = hopCounts(graph, from).get(to);
+                ArrayList<Edge> route = graph.mostDirectRoute(from, to);
+
+                //Check that the bound holds and the route is as short as a breadth-first search finds
+                if (hops == null) {
+                    Assert.assertNull(route);
+                    continue;
+                }
+                Assert.assertTrue(landmarks.lowerBound(from.getIndex(), to.getIndex()) <= hops);
+                Assert.assertEquals((int) hops, route.size());
+                Vertex current = from;
+                for (Edge edge : route) {
+                    Assert.assertTrue(edge.getVertex_u() == current || edge.getVertex_v() == current);
+                    current = graph.opposite(edge, current);
+                }
+                Assert.assertEquals(to, current);
+            }
+
+            //Change the graph, which should cause the landmarks to be rebuilt
+            for (int i = 0; i < 15; i++) graph.removeEdge(graph.edges().get(random.nextInt(graph.edges().size())));
+            Assert.assertNotSame(landmarks, graph.landmarks());
+        }
+
+        //Turning landmarks off goes back to the plain search
+        graph.useLandmarks(0);
+        Assert.assertNull(graph.landmarks());
+    }
+
+    /**
+     * Test the program.Graph.contractionHierarchy method against plain breadth-first searches
+     */
+    @Test
+    public void contractionHierarchy() {
+        Random random = new Random();
+        Graph graph = new Graph();
+
+        //Build a random graph with a few parallel edges and self-loops
+        for (int i = 0; i < 150; i++) graph.insertVertex(randomString(10));
+        ArrayList<Vertex> vertices = graph.vertices();
+        for (int i = 0; i < 220; i++) {
+            graph.insertEdge(vertices.get(random.nextInt(vertices.size())), vertices.get(random.nextInt(vertices.size())), randomString(10));
+        }
+
+        for (int round = 0; round < 3; round++) {
+            ContractionHierarchy hierarchy = graph.contractionHierarchy();
+            Assert.assertSame(hierarchy, graph.contractionHierarchy());
+
+            for (int query = 0; query < 200; query++) {
+                Vertex from = vertices.get(random.nextInt(vertices.size()));
+                Vertex to = vertices.get(random.nextInt(vertices.size()));
+                Integer hops = hopCounts(graph, from).get(to);
+                ArrayList<Edge> route = hierarchy.route(from, to);
+
+                //Check that the route is as short as a breadth-first search finds, and joins up
+                if (hops == null) {
+                    Assert.assertNull(route);
+                    continue;
+                }
+                Assert.assertEquals((int) hops, route.size());
+                Vertex current = from;
+                for (Edge edge : route) {
+                    Assert.assertTrue(edge.getVertex_u() == current || edge.getVertex_v() == current);
+                    current = graph.opposite(edge, current);
+                }
+                Assert.assertEquals(to, current);
+            }
+
+            //Change the graph, which should cause the hierarchy to be rebuilt
+            for (int i = 0; i < 20; i++) graph.removeEdge(graph.edges().get(random.nextInt(graph.edges().size())));
+            Assert.assertNotSame(hierarchy, graph.contractionHierarchy());
+        }
+    }
+
     @Test
     public void traverse() {
         //program.Graph based off this image from Wikipedia:
@@ -510,6 +2014,35 @@ public class GraphTest {
 
     }
 
+    /**
+     * Test the program.Graph.bfForest method
+     */
+    @Test
+    public void traverseForest() {
+        Graph graph = new Graph();
+
+        //Build a line of three stations, a pair of stations and a lot of isolated sidings
+        Vertex a = graph.insertVertex("a");
+        Vertex b = graph.insertVertex("b");
+        Vertex c = graph.insertVertex("c");
+        Vertex d = graph.insertVertex("d");
+        Vertex e = graph.insertVertex("e");
+        graph.insertEdge(c, b, "cb");
+        graph.insertEdge(b, a, "ba");
+        graph.insertEdge(d, e, "de");
+        for (int i = 0; i < 100000; i++) graph.insertVertex(randomString(5));
+
+        //Check the components and the order within them
+        Traversal forest = graph.bfForest();
+        Assert.assertEquals(graph.vertices().size(), forest.size());
+        Assert.assertEquals(100002, forest.componentCount());
+        Assert.assertEquals(Arrays.asList(a, b, c), forest.component(0));
+        Assert.assertEquals(Arrays.asList(d, e), forest.component(1));
+        Assert.assertEquals(5, forest.componentStart(2));
+        Assert.assertEquals(6, forest.componentEnd(2));
+        Assert.assertEquals(forest.vertices(), graph.bfTraverse());
+    }
+
     @Test
     public void traverse_v() {
         //program.Graph based off this image from Wikipedia:
@@ -553,6 +2086,74 @@ public class GraphTest {
     }
 
 
+    /**
+     * Join two stations with an edge whose distance and travel time are the straight-line
+     * distance between them, scaled by a factor of at least 1
+     *
+     * @param graph     The graph to add the edge to
+     * @param u         A station
+     * @param v         A station
+     * @param factor    How much longer the track is than the straight line
+     */
+    private void connect(Graph graph, Vertex u, Vertex v, double factor) {
+        double lat1 = Math.toRadians(u.getLatitude()), lat2 = Math.toRadians(v.getLatitude());
+        double sinLat = Math.sin((lat2 - lat1) / 2);
+        double sinLon = Math.sin(Math.toRadians(v.getLongitude() - u.getLongitude()) / 2);
+        double h = sinLat * sinLat + Math.cos(lat1) * Math.cos(lat2) * sinLon * sinLon;
+        double distance = 2 * 6371.0 * Math.asin(Math.sqrt(h)) * factor;
+        graph.insertEdge(u, v, u.getName() + "-" + v.getName(), distance, distance);
+    }
+
+    /**
+     * Find the length of every route from a vertex to another that does not visit any vertex
+     * twice, by trying every edge from each vertex in turn
+     *
+     * @param graph     The graph to search
+     * @param current   The vertex the route has reached
+     * @param end       The vertex the route should end at
+     * @param visited   The vertices the route has already visited
+     * @param length    The number of edges in the route so far
+     * @param lengths   The list to add the length of each complete route to
+     */
+    private void looplessRoutes(Graph graph, Vertex current, Vertex end, HashSet<Vertex> visited, int length, ArrayList<Integer> lengths) {
+        if (current == end) {
+            lengths.add(length);
+            return;
+        }
+        visited.add(current);
+        for (Edge edge : graph.incidentEdges(current)) {
+            Vertex next = graph.opposite(edge, current);
+            if (!visited.contains(next)) looplessRoutes(graph, next, end, visited, length + 1, lengths);
+        }
+        visited.remove(current);
+    }
+
+    /**
+     * Count the hops from a vertex to every vertex reachable from it, by a plain breadth-first
+     * search over the incidence sequences
+     *
+     * @param graph     The graph to search
+     * @param start     The vertex to start from
+     * @return          The number of hops to each reachable vertex
+     */
+    private HashMap<Vertex, Integer> hopCounts(Graph graph, Vertex start) {
+        HashMap<Vertex, Integer> hops = new HashMap<>();
+        ArrayDeque<Vertex> queue = new ArrayDeque<>();
+        hops.put(start, 0);
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Vertex vertex = queue.remove();
+            for (Edge edge : graph.incidentEdges(vertex)) {
+                Vertex next = graph.opposite(edge, vertex);
+                if (!hops.containsKey(next)) {
+                    hops.put(next, hops.get(vertex) + 1);
+                    queue.add(next);
+                }
+            }
+        }
+        return hops;
+    }
+
     /**
      * Generate a random string of a given length
      *